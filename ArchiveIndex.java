@@ -0,0 +1,259 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Entry listings of zip and jar archives, read from the archive's central
+ * directory without extracting anything. Listings are cached per archive and
+ * reused while its mtime and size are unchanged. Archives found while listing
+ * a directory can be prefetched on a small shared pool, so several are opened
+ * in parallel.
+ */
+public class ArchiveIndex {
+    private static final int DEFAULT_MAX_ARCHIVES = 1_000;
+    private static final long DEFAULT_MAX_ENTRIES = 2_000_000;
+    private static final int POOL_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final String[] EXTENSIONS = { ".zip", ".jar", ".war", ".ear" };
+    private static final int[] NO_CHILDREN = new int[0];
+
+    private static final ArchiveIndex SHARED = new ArchiveIndex(DEFAULT_MAX_ARCHIVES, DEFAULT_MAX_ENTRIES);
+
+    // All entries of one archive, with implicit parent folders added; children sorted like directory listings
+    public static class Listing {
+        public final String[] names;         // Entry paths inside the archive, '/' separated, no trailing '/'
+        public final boolean[] directories;
+        public final long[] sizes;           // Uncompressed size, -1 if unknown
+        public final long[] lastModified;
+        private final Map<String, int[]> children; // Folder path ("" = archive root) -> sorted entry indexes
+        final long archiveModified;
+        final long archiveLength;
+        final boolean readable;      // False: cached so an unreadable archive is not retried until it changes
+
+        Listing(String[] names, boolean[] directories, long[] sizes, long[] lastModified,
+                Map<String, int[]> children, long archiveModified, long archiveLength, boolean readable) {
+            this.names = names;
+            this.directories = directories;
+            this.sizes = sizes;
+            this.lastModified = lastModified;
+            this.children = children;
+            this.archiveModified = archiveModified;
+            this.archiveLength = archiveLength;
+            this.readable = readable;
+        }
+
+        // Indexes of the entries directly inside folder ("" for the top level)
+        public int[] children(String folder) {
+            return children.getOrDefault(folder, NO_CHILDREN);
+        }
+
+        public String simpleName(int entry) {
+            return names[entry].substring(names[entry].lastIndexOf('/') + 1);
+        }
+    }
+
+    private final int maxArchives;
+    private final long maxEntries;
+    private final LinkedHashMap<String, Listing> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, Future<Listing>> loading = new ConcurrentHashMap<>();
+    private final ExecutorService pool;
+    private long cachedEntries;
+    private long hits, reads, failures;
+
+    public ArchiveIndex(int maxArchives, long maxEntries) {
+        this.maxArchives = maxArchives;
+        this.maxEntries = maxEntries;
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(POOL_THREADS, r -> {
+            Thread thread = new Thread(r, "archive-reader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static ArchiveIndex shared() {
+        return SHARED;
+    }
+
+    public static boolean isArchive(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        for (String extension : EXTENSIONS) {
+            if (name.endsWith(extension)) return true;
+        }
+        return false;
+    }
+
+    // Path of an entry as used in the tree and the results: archive path, "!", then the entry path
+    public static String entryPath(File archive, String entryName) {
+        return archive.getAbsolutePath() + "!" + File.separator + entryName.replace('/', File.separatorChar);
+    }
+
+    // Starts reading the archive on the pool unless a valid listing is cached or already loading
+    public void prefetch(File archive) {
+        String key = archive.getAbsolutePath();
+        if (cached(key, archive.lastModified(), archive.length(), false) != null) return;
+        loading.computeIfAbsent(key, k -> pool.submit(() -> {
+            try {
+                return load(archive);
+            } finally {
+                loading.remove(k);
+            }
+        }));
+    }
+
+    // Returns the listing of archive, or null if it cannot be read as a zip file
+    public Listing list(File archive) {
+        String key = archive.getAbsolutePath();
+        Listing listing = cached(key, archive.lastModified(), archive.length(), true);
+        if (listing == null) {
+            Future<Listing> pending = loading.get(key);
+            try {
+                listing = pending != null ? pending.get() : load(archive);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+        return listing.readable ? listing : null;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        cachedEntries = 0;
+    }
+
+    public synchronized String stats() {
+        return reads + " archives read, " + hits + " from cache, " + failures + " unreadable, "
+                + entries.size() + " archives cached (" + cachedEntries + " entries)";
+    }
+
+    private synchronized Listing cached(String key, long modified, long length, boolean countHit) {
+        Listing cached = entries.get(key);
+        if (cached == null) return null;
+        if (cached.archiveModified != modified || cached.archiveLength != length) {
+            remove(key);
+            return null;
+        }
+        if (countHit) hits++;
+        return cached;
+    }
+
+    private Listing load(File archive) {
+        long modified = archive.lastModified();
+        long length = archive.length();
+        Listing listing = read(archive, modified, length);
+        synchronized (this) {
+            if (listing == null) {
+                failures++;
+                listing = new Listing(new String[0], new boolean[0], new long[0], new long[0], Map.of(), modified, length, false);
+            } else {
+                reads++;
+            }
+            put(archive.getAbsolutePath(), listing);
+        }
+        return listing;
+    }
+
+    private static Listing read(File archive, long modified, long length) {
+        Map<String, Integer> index = new LinkedHashMap<>();
+        List<Boolean> directories = new ArrayList<>();
+        List<long[]> attributes = new ArrayList<>(); // size, mtime
+
+        // ZipFile reads only the central directory here; entry data is never inflated
+        try (ZipFile zip = new ZipFile(archive)) {
+            Enumeration<? extends ZipEntry> all = zip.entries();
+            while (all.hasMoreElements()) {
+                ZipEntry entry = all.nextElement();
+                String name = entry.getName().replace('\\', '/');
+                while (name.startsWith("/")) name = name.substring(1);
+                boolean directory = entry.isDirectory() || name.endsWith("/");
+                while (name.endsWith("/")) name = name.substring(0, name.length() - 1);
+                if (name.isEmpty()) continue;
+
+                // Many zips have no entries for their folders: add every missing parent
+                for (int slash = name.indexOf('/'); slash > 0; slash = name.indexOf('/', slash + 1)) {
+                    String parent = name.substring(0, slash);
+                    if (!index.containsKey(parent)) {
+                        index.put(parent, directories.size());
+                        directories.add(true);
+                        attributes.add(new long[] { -1, entry.getTime() });
+                    }
+                }
+                Integer existing = index.get(name);
+                if (existing != null) {
+                    directories.set(existing, directory);
+                    attributes.set(existing, new long[] { entry.getSize(), entry.getTime() });
+                } else {
+                    index.put(name, directories.size());
+                    directories.add(directory);
+                    attributes.add(new long[] { entry.getSize(), entry.getTime() });
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return null; // Not a zip, truncated or unreadable
+        }
+
+        int n = index.size();
+        String[] names = index.keySet().toArray(new String[0]);
+        boolean[] isDirectory = new boolean[n];
+        long[] sizes = new long[n];
+        long[] times = new long[n];
+        Map<String, List<Integer>> byFolder = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            isDirectory[i] = directories.get(i);
+            sizes[i] = isDirectory[i] ? -1 : attributes.get(i)[0];
+            times[i] = attributes.get(i)[1];
+            int slash = names[i].lastIndexOf('/');
+            byFolder.computeIfAbsent(slash < 0 ? "" : names[i].substring(0, slash), k -> new ArrayList<>()).add(i);
+        }
+
+        // Same order as directory listings: folders first, then names case-insensitively
+        Map<String, int[]> children = new HashMap<>();
+        Comparator<Integer> order = Comparator.<Integer, Boolean>comparing(i -> !isDirectory[i])
+                .thenComparing(i -> names[i].substring(names[i].lastIndexOf('/') + 1), String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, List<Integer>> folder : byFolder.entrySet()) {
+            folder.getValue().sort(order);
+            children.put(folder.getKey(), folder.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        return new Listing(names, isDirectory, sizes, times, children, modified, length, true);
+    }
+
+    private void put(String key, Listing listing) {
+        remove(key);
+        entries.put(key, listing);
+        cachedEntries += listing.names.length;
+
+        // Evict least recently used archives until both limits hold
+        Iterator<Map.Entry<String, Listing>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxArchives || cachedEntries > maxEntries) && it.hasNext()) {
+            Map.Entry<String, Listing> eldest = it.next();
+            if (eldest.getValue() == listing) continue;
+            cachedEntries -= eldest.getValue().names.length;
+            it.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Listing old = entries.remove(key);
+        if (old != null) {
+            cachedEntries -= old.names.length;
+        }
+    }
+}
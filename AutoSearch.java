@@ -0,0 +1,437 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * "Auto" search strategy. Cheaply samples a root (fan-out of the first levels,
+ * a depth probe, the file store type and the listing latency), chooses between
+ * breadth-first and depth-first order, the number of worker threads and the
+ * frontier queue, and records why. The crawl itself runs on one deque: BFS takes
+ * from its head and DFS from its tail, so the order can switch mid-crawl when the
+ * frontier grows too large, and extra workers join when listings turn out slow.
+ */
+public class AutoSearch {
+    // Delay per visited node for the visualisation, like the BFS and DFS engines
+    public static volatile int delayMillis = 50;
+
+    private static final int SAMPLE_DIRECTORIES = 8;
+    private static final int DEPTH_PROBE_LIMIT = 32;
+    private static final long SLOW_LISTING_MICROS = 2_000;      // Listing latency that makes the crawl I/O bound
+    private static final int FRONTIER_LIMIT = 50_000;           // BFS frontier size that switches to DFS
+    private static final int PARALLEL_MIN_NODES = 20_000;       // Below this threads cost more than they save
+    private static final int MAX_IO_THREADS = 64;
+    private static final double LATENCY_SMOOTHING = 0.1;
+    private static final int LATENCY_MIN_SAMPLES = 16;
+    private static final long WORKER_STOP_MILLIS = 5000;        // Longest wait for workers when the crawl ends
+
+    private static final Set<String> NETWORK_FILE_STORES = Set.of("nfs", "nfs4", "cifs", "smb", "smbfs", "smb2", "smb3",
+            "sshfs", "fuse.sshfs", "9p", "afs", "davfs", "fuse.rclone", "ceph", "glusterfs", "fuse.glusterfs", "webdav");
+
+    public static class Sample {
+        public int sampledDirectories;
+        public double averageEntries;        // Entries per sampled directory
+        public double averageSubdirectories; // Subdirectories per sampled directory
+        public int maxEntries;
+        public int depthProbe;               // Levels reached by following the first subdirectory
+        public String fileStoreType = "unknown";
+        public double averageListMicros;
+        public long sampleMicros;            // Time spent sampling
+    }
+
+    public static class Decision {
+        public final Sample sample;
+        public volatile boolean depthFirst;
+        public volatile int parallelism;
+        public volatile String queueType;
+        public final String threadKind;
+        public final List<String> reasons = Collections.synchronizedList(new ArrayList<>());
+        public final List<String> switches = Collections.synchronizedList(new ArrayList<>()); // Mid-crawl changes
+
+        Decision(Sample sample, String threadKind) {
+            this.sample = sample;
+            this.threadKind = threadKind;
+        }
+
+        public String describe() {
+            return (parallelism > 1 ? "Parallel " : "") + (depthFirst ? "DFS" : "BFS")
+                    + (parallelism > 1 ? " (" + parallelism + " " + threadKind + ")" : "") + ", " + queueType;
+        }
+    }
+
+    public static Sample sample(File root) {
+        long start = System.nanoTime();
+        Sample sample = new Sample();
+        try {
+            sample.fileStoreType = Files.getFileStore(root.toPath()).type().toLowerCase(Locale.ROOT);
+        } catch (IOException | RuntimeException e) {
+            // Unknown store: decided on latency alone
+        }
+
+        // Fan-out of the root and of its first few subdirectories. The listings are re-read
+        // (refresh, not list): the tree builder has usually cached them, and cache hits say
+        // nothing about how fast the file system lists a directory
+        long listNanos = 0;
+        int listings = 0;
+        long entries = 0;
+        long subdirectories = 0;
+        List<File> toSample = new ArrayList<>();
+        toSample.add(root);
+        for (int i = 0; i < toSample.size() && i < SAMPLE_DIRECTORIES; i++) {
+            long t = System.nanoTime();
+            DirectoryCache.Listing listing = DirectoryCache.shared().refresh(toSample.get(i));
+            listNanos += System.nanoTime() - t;
+            listings++;
+            if (listing == null) continue;
+            entries += listing.files.length;
+            sample.maxEntries = Math.max(sample.maxEntries, listing.files.length);
+            for (int c = 0; c < listing.files.length; c++) {
+                if (listing.directories[c] && !listing.links[c]) {
+                    subdirectories++;
+                    if (toSample.size() < SAMPLE_DIRECTORIES) toSample.add(listing.files[c]);
+                }
+            }
+        }
+
+        // Depth probe: follow the first subdirectory down
+        File current = root;
+        while (sample.depthProbe < DEPTH_PROBE_LIMIT) {
+            long t = System.nanoTime();
+            DirectoryCache.Listing listing = DirectoryCache.shared().refresh(current);
+            listNanos += System.nanoTime() - t;
+            listings++;
+            File next = null;
+            for (int c = 0; listing != null && c < listing.files.length && next == null; c++) {
+                if (listing.directories[c] && !listing.links[c]) next = listing.files[c];
+            }
+            if (next == null) break;
+            current = next;
+            sample.depthProbe++;
+        }
+
+        sample.sampledDirectories = Math.min(toSample.size(), SAMPLE_DIRECTORIES);
+        sample.averageEntries = (double) entries / sample.sampledDirectories;
+        sample.averageSubdirectories = (double) subdirectories / sample.sampledDirectories;
+        sample.averageListMicros = listNanos / 1000.0 / listings;
+        sample.sampleMicros = (System.nanoTime() - start) / 1000;
+        return sample;
+    }
+
+    // Picks the order, threads and queue for a root; nodeLimit caps the estimate (e.g. the size of the tree view)
+    public static Decision choose(Sample sample, boolean findAll, int nodeLimit) {
+        Decision decision = new Decision(sample, virtualThreadsAvailable() ? "virtual threads" : "platform threads");
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        // Widest level and total size, assuming the sampled shape repeats down to the probed depth
+        double width = sample.averageEntries;
+        double nodes = 1 + width;
+        for (int level = 1; level < Math.min(sample.depthProbe, 6); level++) {
+            width = sample.averageEntries * Math.pow(Math.max(1, sample.averageSubdirectories), level);
+            nodes += width;
+        }
+        long estimatedNodes = (long) Math.min(nodes, nodeLimit);
+        long estimatedWidth = (long) Math.min(width, nodeLimit);
+        decision.reasons.add(String.format(Locale.ROOT, "sampled %d directories in %d µs: %.1f entries and %.1f subdirectories each, depth probe %d, %s file store, %.0f µs per listing",
+                sample.sampledDirectories, sample.sampleMicros, sample.averageEntries, sample.averageSubdirectories,
+                sample.depthProbe, sample.fileStoreType, sample.averageListMicros));
+        decision.reasons.add("estimated " + estimatedNodes + " nodes, widest level about " + estimatedWidth);
+
+        // Order: BFS finds shallow matches first, DFS keeps the frontier at O(depth)
+        if (estimatedWidth > FRONTIER_LIMIT) {
+            decision.depthFirst = true;
+            decision.reasons.add("DFS: a BFS frontier of about " + estimatedWidth + " paths exceeds " + FRONTIER_LIMIT);
+        } else if (!findAll && sample.depthProbe > 12 && sample.averageEntries < 4) {
+            decision.depthFirst = true;
+            decision.reasons.add("DFS: deep and narrow tree (depth " + sample.depthProbe + "), first match likely far down");
+        } else {
+            decision.depthFirst = false;
+            decision.reasons.add("BFS: frontier stays small enough, shallow matches are found first");
+        }
+
+        // Threads: many for slow (network) listings, one per core for large local trees
+        boolean networkStore = NETWORK_FILE_STORES.contains(sample.fileStoreType) || sample.fileStoreType.startsWith("fuse.");
+        if (networkStore || sample.averageListMicros > SLOW_LISTING_MICROS) {
+            decision.parallelism = Math.min(MAX_IO_THREADS, cores * 8);
+            decision.reasons.add("parallel: " + (networkStore ? sample.fileStoreType + " is a network file store" : "listings are slow")
+                    + ", more threads hide the latency");
+        } else if (findAll && cores > 1 && estimatedNodes >= PARALLEL_MIN_NODES) {
+            decision.parallelism = cores;
+            decision.reasons.add("parallel: " + estimatedNodes + " nodes to visit on a local disk, one thread per core");
+        } else {
+            decision.parallelism = 1;
+            decision.reasons.add("single thread: " + (cores == 1 ? "one core available" : !findAll ? "stops at the first match" : "tree too small for threads to pay off"));
+        }
+        decision.queueType = decision.parallelism > 1 ? "ConcurrentLinkedDeque" : "ArrayDeque";
+        if (decision.parallelism > 1 && !virtualThreadsAvailable()) {
+            decision.reasons.add("virtual threads need Java 21, using platform threads");
+        }
+        return decision;
+    }
+
+    public static void search(
+            File root,
+            FileMatcher matcher,
+            boolean findAll,
+            Map<String, TreeNodeData> nodeMap,
+            Set<String> visitedPaths,
+            List<String> traversalOrder,
+            Set<String> foundFiles,
+            Consumer<String> statusUpdater,
+            long searchStartTime,
+            Decision decision
+    ) throws Exception {
+        new Crawl(matcher, findAll, nodeMap, visitedPaths, traversalOrder, foundFiles, statusUpdater, searchStartTime, decision)
+                .run(root);
+    }
+
+    private static class Crawl {
+        private final FileMatcher matcher;
+        private final boolean findAll;
+        private final Map<String, TreeNodeData> nodeMap;
+        private final Set<String> visitedPaths;
+        private final List<String> traversalOrder;
+        private final Set<String> foundFiles;
+        private final Consumer<String> statusUpdater;
+        private final long searchStartTime;
+        private final Decision decision;
+
+        private volatile Deque<File> frontier;
+        private final AtomicInteger queued = new AtomicInteger();   // Paths in the frontier
+        private final AtomicInteger inFlight = new AtomicInteger(); // Queued plus being visited
+        private volatile boolean parallel;
+        private volatile boolean cancelled;
+        private volatile double latencyMicros;                     // Smoothed latency of uncached listings
+        private final AtomicInteger listings = new AtomicInteger(); // Uncached listings seen so far
+        private ExecutorService workers;
+        private final List<Future<?>> workerResults = new ArrayList<>();
+
+        Crawl(FileMatcher matcher, boolean findAll, Map<String, TreeNodeData> nodeMap, Set<String> visitedPaths,
+              List<String> traversalOrder, Set<String> foundFiles, Consumer<String> statusUpdater,
+              long searchStartTime, Decision decision) {
+            this.matcher = matcher;
+            this.findAll = findAll;
+            this.nodeMap = nodeMap;
+            this.visitedPaths = visitedPaths;
+            this.traversalOrder = traversalOrder;
+            this.foundFiles = foundFiles;
+            this.statusUpdater = statusUpdater;
+            this.searchStartTime = searchStartTime;
+            this.decision = decision;
+            this.latencyMicros = decision.sample.averageListMicros; // Measured on uncached reads
+        }
+
+        void run(File root) throws Exception {
+            frontier = decision.parallelism > 1 ? new ConcurrentLinkedDeque<>() : new ArrayDeque<>();
+            offer(Collections.singletonList(root));
+            try {
+                if (decision.parallelism > 1) {
+                    startWorkers(decision.parallelism - 1);
+                }
+                work();
+                // No workers are added once this thread is done, so the list is final here
+                List<Future<?>> results;
+                synchronized (this) {
+                    results = new ArrayList<>(workerResults);
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            } finally {
+                cancelled = true;
+                ExecutorService pool;
+                synchronized (this) {
+                    pool = workers;
+                }
+                if (pool != null) {
+                    // A worker may be in the middle of a visit; it must not write after this crawl returns.
+                    // A cancelled crawl is interrupted itself, so the flag is set aside while waiting.
+                    pool.shutdownNow();
+                    boolean interrupted = Thread.interrupted();
+                    try {
+                        pool.awaitTermination(WORKER_STOP_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } finally {
+                        if (interrupted) Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        private void work() throws InterruptedException {
+            while (!cancelled && (findAll || foundFiles.isEmpty())) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                File current = take();
+                if (current == null) {
+                    if (inFlight.get() == 0 || !parallel) return;
+                    LockSupport.parkNanos(100_000); // Other workers are still listing directories
+                    continue;
+                }
+                try {
+                    visit(current);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                adapt();
+            }
+        }
+
+        private File take() {
+            Deque<File> deque = frontier;
+            File next = decision.depthFirst ? deque.pollLast() : deque.pollFirst();
+            if (next != null) queued.decrementAndGet();
+            return next;
+        }
+
+        private void offer(List<File> children) {
+            inFlight.addAndGet(children.size());
+            queued.addAndGet(children.size());
+            Deque<File> deque = frontier;
+            if (decision.depthFirst) {
+                // Taken from the tail: push in reverse so the first child is visited first
+                for (int i = children.size() - 1; i >= 0; i--) deque.addLast(children.get(i));
+            } else {
+                for (File child : children) deque.addLast(child);
+            }
+        }
+
+        private void visit(File current) throws InterruptedException {
+            String currentPath = current.getAbsolutePath();
+            TreeNodeData node = nodeMap.get(currentPath);
+            if (node == null) {
+                return;
+            }
+            visitedPaths.add(currentPath);
+            traversalOrder.add(currentPath);
+            statusUpdater.accept("Searching (Auto: " + (decision.depthFirst ? "DFS" : "BFS") + "): " + current.getName());
+
+            // Entries inside a zip/jar (archive search) are not on disk; the tree says what they are
+            boolean archiveEntry = node.archiveEntry != null;
+            boolean isFile = archiveEntry ? !node.archiveDirectory : current.isFile();
+            if (isFile && matcher.accept(currentPath, current.getName())) {
+                foundFiles.add(currentPath);
+            }
+            if (archiveEntry || isFile) {
+                // An archive, or a folder inside one: its entries come from the tree and are queued like a folder's children
+                if (!node.children.isEmpty()) {
+                    List<File> entries = new ArrayList<>(node.children.size());
+                    for (TreeNodeData entry : node.children) {
+                        entries.add(entry.file);
+                    }
+                    offer(entries);
+                }
+            } else if (current.isDirectory()) {
+                long startMillis = System.currentTimeMillis();
+                long start = System.nanoTime();
+                DirectoryCache.Listing listing = DirectoryCache.shared().list(current);
+                double micros = (System.nanoTime() - start) / 1000.0;
+                // Only listings read from the file system during this call tell anything about its latency
+                if (listing != null && listing.listedAt >= startMillis) {
+                    listings.incrementAndGet();
+                    latencyMicros = latencyMicros * (1 - LATENCY_SMOOTHING) + micros * LATENCY_SMOOTHING;
+                }
+
+                if (listing != null) {
+                    List<File> children = new ArrayList<>(listing.files.length);
+                    for (int i = 0; i < listing.files.length; i++) {
+                        if (TreeNodeData.admitted(nodeMap, listing, i)) {
+                            children.add(listing.files[i]);
+                        }
+                    }
+                    offer(children);
+                }
+            }
+
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+        }
+
+        // Mid-crawl switches: the frontier outgrew BFS, or listings got slow enough for more threads
+        private void adapt() {
+            if (!decision.depthFirst && queued.get() > FRONTIER_LIMIT) {
+                synchronized (this) {
+                    if (!decision.depthFirst) {
+                        decision.depthFirst = true;
+                        record("BFS to DFS: frontier reached " + queued.get() + " paths");
+                    }
+                }
+            }
+            if (!parallel && listings.get() >= LATENCY_MIN_SAMPLES && latencyMicros > SLOW_LISTING_MICROS) {
+                synchronized (this) {
+                    if (!parallel && !cancelled) {
+                        int threads = Math.min(MAX_IO_THREADS, Runtime.getRuntime().availableProcessors() * 8);
+                        // Only this thread uses the ArrayDeque here, so it can be handed over as is
+                        frontier = new ConcurrentLinkedDeque<>(frontier);
+                        decision.parallelism = threads;
+                        decision.queueType = "ConcurrentLinkedDeque";
+                        record(String.format(Locale.ROOT, "single thread to %d %s: listings take %.0f µs", threads, decision.threadKind, latencyMicros));
+                        startWorkers(threads - 1);
+                    }
+                }
+            }
+        }
+
+        private synchronized void startWorkers(int count) {
+            parallel = true;
+            if (count <= 0) return;
+            workers = Executors.newFixedThreadPool(count, threadFactory());
+            for (int i = 0; i < count; i++) {
+                workerResults.add(workers.submit(() -> {
+                    work();
+                    return null;
+                }));
+            }
+        }
+
+        private void record(String change) {
+            decision.switches.add("after " + (System.currentTimeMillis() - searchStartTime) + " ms: " + change);
+        }
+    }
+
+    // Thread.ofVirtual() exists from Java 21 on; looked up reflectively so this still runs on 17
+    private static final ThreadFactory VIRTUAL_THREADS = virtualThreadFactory();
+
+    private static boolean virtualThreadsAvailable() {
+        return VIRTUAL_THREADS != null;
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        if (VIRTUAL_THREADS != null) return VIRTUAL_THREADS;
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, "auto-search-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
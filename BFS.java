@@ -1,5 +1,4 @@
 import java.io.File;
-import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -9,10 +8,13 @@ import java.util.function.Consumer;
 
 public class BFS {
 
+    // Jeda per node dalam milidetik untuk visualisasi; 0 untuk crawl tanpa jeda (misalnya soak test)
+    public static volatile int delayMillis = 50;
+
     // Fungsi pencarian file menggunakan algoritma BFS
     public static void search(
             String rootDirPath,                         // path direktori root tempat pencarian dimulai
-            String targetFilePattern,                   // nama file atau pola nama file yang dicari (bisa pakai wildcard *)
+            FileMatcher matcher,                        // penentu file yang cocok (pola wildcard *, batch pola, atau fuzzy)
             boolean findAll,                            // jika true, cari semua file yang cocok, jika false berhenti saat ketemu pertama
             Map<String, TreeNodeData> nodeMap,           // struktur pohon folder/file yang sudah dibuat sebelumnya
             Set<String> visitedPaths,                    // set untuk menyimpan path yang sudah dikunjungi (untuk visualisasi)
@@ -29,7 +31,12 @@ public class BFS {
 
         // Selama queue tidak kosong, lakukan iterasi
         while (!queue.isEmpty()) {
-            
+
+            // Dibatalkan (root lain sudah ketemu, atau waktu habis): berhenti juga saat delayMillis = 0
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("BFS cancelled");
+            }
+
             // Jika tidak perlu mencari semua file dan sudah ada yang ketemu, hentikan
             if (!findAll && !foundFiles.isEmpty()) {
                 break;
@@ -40,7 +47,8 @@ public class BFS {
             String currentPath = current.getAbsolutePath(); // .getAbsolutePath itu buat mendapatkan path lengkap
 
             // Cek apakah path saat ini ada dalam nodeMap (hanya jalur yang diizinkan)
-            if (!nodeMap.containsKey(currentPath)) {
+            TreeNodeData node = nodeMap.get(currentPath);
+            if (node == null) {
                 continue;
             }
 
@@ -52,27 +60,32 @@ public class BFS {
             // Update status GUI/console via statusUpdater
             statusUpdater.accept("Searching (BFS): " + current.getName());
 
+            // Entri di dalam zip/jar (mode arsip) tidak ada di disk, jenisnya diambil dari pohon
+            boolean archiveEntry = node.archiveEntry != null;
+            boolean isFile = archiveEntry ? !node.archiveDirectory : current.isFile();
+
             // Jika file, cek apakah cocok dengan pattern yang dicari
-            if (current.isFile()) {
-                if (matchesPattern(current.getName(), targetFilePattern)) {
+            if (isFile) {
+                if (matcher.accept(currentPath, current.getName())) {
                     // Jika cocok, tambahkan ke hasil foundFiles
                     foundFiles.add(currentPath);
                 }
             }
+            // Isi arsip (arsip itu sendiri atau folder di dalamnya) diambil dari pohon dan masuk queue seperti isi folder
+            if (archiveEntry || isFile) {
+                for (TreeNodeData entry : node.children) {
+                    queue.offer(entry.file);
+                }
+            }
             // Jika direktori, tambahkan semua anak-anaknya ke queue
             else if (current.isDirectory()) {
-                File[] children = current.listFiles();
-                if (children != null) {
-                    // Urutkan: folder dulu, baru file, lalu berdasarkan nama (alfabet)
-                    Arrays.sort(children, (a, b) -> {
-                        if (a.isDirectory() && !b.isDirectory()) return -1;
-                        if (!a.isDirectory() && b.isDirectory()) return 1;
-                        return a.getName().compareToIgnoreCase(b.getName());
-                    });
-
-                    // Masukkan semua anak ke queue jika ada dalam nodeMap
-                    for (File child : children) {
-                        if (nodeMap.containsKey(child.getAbsolutePath())) {
+                // Ambil isi folder dari cache (sudah terurut: folder dulu, baru file, lalu alfabet)
+                DirectoryCache.Listing listing = DirectoryCache.shared().list(current);
+                if (listing != null) {
+                    // Masukkan semua anak ke queue jika ada dalam nodeMap; folder hanya jika pohonnya juga masuk (symlink/loop)
+                    for (int i = 0; i < listing.files.length; i++) {
+                        File child = listing.files[i];
+                        if (TreeNodeData.admitted(nodeMap, listing, i)) {
                             queue.offer(child);
                         }
                     }
@@ -80,20 +93,9 @@ public class BFS {
             }
 
             // Beri jeda agar traversal tidak terlalu cepat (bisa untuk simulasi/visualisasi)
-            Thread.sleep(50);
-        }
-    }
-
-    // Fungsi untuk mencocokkan nama file dengan pola wildcard
-    private static boolean matchesPattern(String fileName, String pattern) {
-        // Jika pattern mengandung wildcard '*', ubah jadi regex
-        if (pattern.contains("*")) {
-            // Escape karakter titik, lalu ganti * menjadi .*
-            String regex = pattern.replace(".", "\\.").replace("*", ".*");
-            // Cek apakah nama file cocok dengan regex, case-insensitive
-            return fileName.matches("(?i)" + regex);
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
         }
-        // Jika tidak ada wildcard, lakukan perbandingan nama biasa (case-insensitive)
-        return fileName.equalsIgnoreCase(pattern);
     }
 }
@@ -0,0 +1,276 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Streams crawl records to a file while the crawl runs: one record per visited
+ * path (the full traversal order) and one per match, with size, mtime and the
+ * time since the crawl started. Records go through a direct buffer into a
+ * FileChannel, so memory use does not grow with the size of the crawl.
+ *
+ * NDJSON writes one JSON object per line with a "type" of start, visit, match
+ * or end. BINARY starts with the magic "FCX1"; every record is an int length
+ * followed by that many bytes: type (1 start, 2 visit, 3 match, 4 end), then
+ * varint fields seq, millis and size + 1, a long mtime, a flags byte
+ * (1 = directory) and two varint-length-prefixed UTF-8 strings: the path and
+ * the root of a match. The start record carries the roots and the query as its
+ * strings, the end record the visit count as seq and the match count as size.
+ */
+public class CrawlExporter implements Closeable {
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_RECORD = 64 * 1024;
+    private static final byte[] MAGIC = { 'F', 'C', 'X', '1' };
+
+    private static final byte TYPE_START = 1;
+    private static final byte TYPE_VISIT = 2;
+    private static final byte TYPE_MATCH = 3;
+    private static final byte TYPE_END = 4;
+
+    public enum Format {
+        NDJSON("ndjson"), BINARY("fcx");
+
+        public final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    private final Format format;
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final long startNanos = System.nanoTime();
+    private long visits;
+    private long matches;
+    private long bytesWritten;
+    private boolean closed;
+
+    public CrawlExporter(File file, Format format, List<String> roots, String query) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+        this.file = file;
+        this.format = format;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        if (format == Format.BINARY) {
+            buffer.put(MAGIC);
+        }
+        writeRecord(TYPE_START, 0, 0, System.currentTimeMillis(), false, String.join(File.pathSeparator, roots), query);
+    }
+
+    // Default export file for a crawl started now
+    public static File defaultFile(Format format) {
+        File dir = new File(System.getProperty("user.home"), ".folder-crawler" + File.separator + "exports");
+        return new File(dir, "crawl-" + System.currentTimeMillis() + "." + format.extension);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized long visits() {
+        return visits;
+    }
+
+    public synchronized long matches() {
+        return matches;
+    }
+
+    public synchronized long bytesWritten() {
+        return bytesWritten + buffer.position();
+    }
+
+    /**
+     * Wraps the traversal order handed to the engines: every added path is also
+     * exported as a visit record.
+     */
+    public List<String> tee(List<String> traversalOrder) {
+        return new AbstractList<String>() {
+            @Override
+            public boolean add(String path) {
+                traversalOrder.add(path);
+                visited(path);
+                return true;
+            }
+
+            @Override
+            public String get(int index) {
+                return traversalOrder.get(index);
+            }
+
+            @Override
+            public int size() {
+                return traversalOrder.size();
+            }
+        };
+    }
+
+    public void visited(String path) {
+        BasicFileAttributes attributes = attributes(path);
+        synchronized (this) {
+            writeRecord(TYPE_VISIT, visits++, attributes == null ? -1 : attributes.size(),
+                    attributes == null ? -1 : attributes.lastModifiedTime().toMillis(),
+                    attributes != null && attributes.isDirectory(), path, null);
+        }
+    }
+
+    public void matched(String root, String path) {
+        BasicFileAttributes attributes = attributes(path);
+        synchronized (this) {
+            writeRecord(TYPE_MATCH, matches++, attributes == null ? -1 : attributes.size(),
+                    attributes == null ? -1 : attributes.lastModifiedTime().toMillis(), false, path, root);
+        }
+    }
+
+    // Writes the end record with the totals and closes the file
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            writeRecord(TYPE_END, visits, matches, System.currentTimeMillis(), false, null, null);
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // One stat per record; the attributes are read before taking the lock
+    private static BasicFileAttributes attributes(String path) {
+        try {
+            Path p = Paths.get(path);
+            return Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException | RuntimeException e) {
+            return null; // Vanished or unreadable: exported with size and mtime -1
+        }
+    }
+
+    private void writeRecord(byte type, long seq, long size, long mtime, boolean directory, String path, String extra) {
+        if (closed && type != TYPE_END) return; // Engines still running after the export was closed
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        try {
+            if (format == Format.NDJSON) {
+                writeJson(type, seq, millis, size, mtime, directory, path, extra);
+            } else {
+                writeBinary(type, seq, millis, size, mtime, directory, path, extra);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write export file " + file, e);
+        }
+    }
+
+    private void writeJson(byte type, long seq, long millis, long size, long mtime, boolean directory,
+                           String path, String extra) throws IOException {
+        StringBuilder json = new StringBuilder(96 + (path == null ? 0 : path.length()));
+        switch (type) {
+            case TYPE_START:
+                json.append("{\"type\":\"start\",\"roots\":");
+                appendJsonString(json, path);
+                json.append(",\"query\":");
+                appendJsonString(json, extra);
+                json.append(",\"startedAt\":").append(mtime).append('}');
+                break;
+            case TYPE_END:
+                json.append("{\"type\":\"end\",\"visits\":").append(seq).append(",\"matches\":").append(size)
+                        .append(",\"ms\":").append(millis).append(",\"endedAt\":").append(mtime).append('}');
+                break;
+            default:
+                json.append("{\"type\":\"").append(type == TYPE_VISIT ? "visit" : "match").append("\",\"seq\":").append(seq)
+                        .append(",\"ms\":").append(millis).append(",\"path\":");
+                appendJsonString(json, path);
+                if (extra != null) {
+                    json.append(",\"root\":");
+                    appendJsonString(json, extra);
+                }
+                if (type == TYPE_VISIT) {
+                    json.append(",\"dir\":").append(directory);
+                }
+                json.append(",\"size\":").append(size).append(",\"mtime\":").append(mtime).append('}');
+        }
+        json.append('\n');
+
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.remaining()) flush();
+        if (bytes.length > buffer.capacity()) {
+            writeFully(ByteBuffer.wrap(bytes));
+        } else {
+            buffer.put(bytes);
+        }
+    }
+
+    private void writeBinary(byte type, long seq, long millis, long size, long mtime, boolean directory,
+                             String path, String extra) throws IOException {
+        byte[] pathBytes = path == null ? new byte[0] : path.getBytes(StandardCharsets.UTF_8);
+        byte[] extraBytes = extra == null ? new byte[0] : extra.getBytes(StandardCharsets.UTF_8);
+        if (pathBytes.length + extraBytes.length > MAX_RECORD) {
+            throw new IOException("Path too long for export record: " + path);
+        }
+        if (buffer.remaining() < MAX_RECORD + 64) flush();
+
+        int lengthAt = buffer.position();
+        buffer.putInt(0); // Patched below
+        buffer.put(type);
+        putVarLong(seq);
+        putVarLong(millis);
+        putVarLong(size + 1); // -1 (unknown) becomes 0
+        buffer.putLong(mtime);
+        buffer.put((byte) (directory ? 1 : 0));
+        putVarLong(pathBytes.length);
+        buffer.put(pathBytes);
+        putVarLong(extraBytes.length);
+        buffer.put(extraBytes);
+        buffer.putInt(lengthAt, buffer.position() - lengthAt - Integer.BYTES);
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void appendJsonString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            bytesWritten += channel.write(bytes);
+        }
+    }
+}
@@ -1,5 +1,4 @@
 import java.io.File;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -7,10 +6,13 @@ import java.util.function.Consumer;
 
 public class DFS {
 
+    // Jeda per node dalam milidetik untuk visualisasi; 0 untuk crawl tanpa jeda (misalnya soak test)
+    public static volatile int delayMillis = 50;
+
     // Fungsi pencarian file menggunakan algoritma DFS
     public static boolean search(
             File current,                                  // File atau direktori saat ini yang sedang diproses
-            String targetFilePattern,                      // Pola nama file yang dicari (bisa wildcard *)
+            FileMatcher matcher,                           // Penentu file yang cocok (pola wildcard *, batch pola, atau fuzzy)
             boolean findAll,                               // Jika true, cari semua file. Jika false, stop di file pertama ketemu
             Map<String, TreeNodeData> nodeMap,             // Struktur tree yang sudah dibangun sebelumnya (untuk simulasi visualisasi)
             Set<String> visitedPaths,                      // Menyimpan path yang sudah dikunjungi
@@ -20,6 +22,11 @@ public class DFS {
             long searchStartTime                           // Waktu pencarian dimulai (untuk menghitung durasi)
     ) throws InterruptedException {
 
+        // Dibatalkan (root lain sudah ketemu, atau waktu habis): berhenti juga saat delayMillis = 0
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("DFS cancelled");
+        }
+
         // Kondisi berhenti jika mode findAll false dan file sudah ditemukan
         if (!findAll && !foundFiles.isEmpty()) {
             return true; // Mengembalikan sinyal agar recursive parent-nya bisa langsung stop
@@ -28,7 +35,8 @@ public class DFS {
         String currentPath = current.getAbsolutePath();
 
         // Hanya proses node jika path-nya terdaftar di nodeMap (untuk batasi traversal)
-        if (!nodeMap.containsKey(currentPath)) {
+        TreeNodeData node = nodeMap.get(currentPath);
+        if (node == null) {
             return false;
         }
 
@@ -40,9 +48,13 @@ public class DFS {
         // Update status ke GUI/console melalui statusUpdater
         statusUpdater.accept("Searching (DFS): " + current.getName());
 
+        // Entri di dalam zip/jar (mode arsip) tidak ada di disk, jenisnya diambil dari pohon
+        boolean archiveEntry = node.archiveEntry != null;
+        boolean isFile = archiveEntry ? !node.archiveDirectory : current.isFile();
+
         // Jika file, cek apakah cocok dengan pola target
-        if (current.isFile()) {
-            if (matchesPattern(current.getName(), targetFilePattern)) {
+        if (isFile) {
+            if (matcher.accept(currentPath, current.getName())) {
                 // Jika cocok, masukkan ke foundFiles
                 foundFiles.add(currentPath);
                 // Jika mode bukan findAll, hentikan pencarian setelah ketemu pertama
@@ -51,22 +63,25 @@ public class DFS {
                 }
             }
         }
+        // Isi arsip (arsip itu sendiri atau folder di dalamnya) diambil dari pohon, lalu DFS seperti isi folder
+        if (archiveEntry || isFile) {
+            for (TreeNodeData entry : node.children) {
+                if (search(entry.file, matcher, findAll, nodeMap, visitedPaths, traversalOrder, foundFiles, statusUpdater, searchStartTime) && !findAll) {
+                    return true;
+                }
+            }
+        }
         // Jika direktori, lakukan recursive DFS ke setiap child-nya
         else if (current.isDirectory()) {
-            File[] children = current.listFiles();
-            if (children != null) {
-                // Urutkan child: folder dulu, lalu file, urut alfabet
-                Arrays.sort(children, (a, b) -> {
-                    if (a.isDirectory() && !b.isDirectory()) return -1;
-                    if (!a.isDirectory() && b.isDirectory()) return 1;
-                    return a.getName().compareToIgnoreCase(b.getName());
-                });
-
-                // Lakukan DFS untuk setiap child yang ada di nodeMap
-                for (File child : children) {
-                    if (nodeMap.containsKey(child.getAbsolutePath())) {
+            // Ambil isi folder dari cache (sudah terurut: folder dulu, lalu file, urut alfabet)
+            DirectoryCache.Listing listing = DirectoryCache.shared().list(current);
+            if (listing != null) {
+                // Lakukan DFS untuk setiap child yang ada di nodeMap; folder hanya jika pohonnya juga masuk (symlink/loop)
+                for (int i = 0; i < listing.files.length; i++) {
+                    File child = listing.files[i];
+                    if (TreeNodeData.admitted(nodeMap, listing, i)) {
                         // Jika recursive DFS menemukan file target, berhenti jika mode findAll = false
-                        if (search(child, targetFilePattern, findAll, nodeMap, visitedPaths, traversalOrder, foundFiles, statusUpdater, searchStartTime)) {
+                        if (search(child, matcher, findAll, nodeMap, visitedPaths, traversalOrder, foundFiles, statusUpdater, searchStartTime)) {
                             if (!findAll) {
                                 return true; // Propagasi sinyal stop ke recursive atas
                             }
@@ -77,19 +92,9 @@ public class DFS {
         }
 
         // Delay untuk simulasi visualisasi traversal agar tidak terlalu cepat
-        Thread.sleep(50);
-        return false; // Jika tidak ditemukan di path ini, kembali false
-    }
-
-    // Fungsi pencocokan nama file dengan pola (mendukung wildcard *)
-    private static boolean matchesPattern(String fileName, String pattern) {
-        // Jika pattern mengandung wildcard '*', ubah jadi regex
-        if (pattern.contains("*")) {
-            String regex = pattern.replace(".", "\\.").replace("*", ".*");
-            // Cek kecocokan fileName dengan regex, case-insensitive
-            return fileName.matches("(?i)" + regex);
+        if (delayMillis > 0) {
+            Thread.sleep(delayMillis);
         }
-        // Jika tidak, bandingkan nama file secara langsung (case-insensitive)
-        return fileName.equalsIgnoreCase(pattern);
+        return false; // Jika tidak ditemukan di path ini, kembali false
     }
 }
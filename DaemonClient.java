@@ -0,0 +1,212 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Client of SearchDaemon for the GUI and the command line. Matching paths are
+ * handed over line by line while the daemon streams them. A blocked socket read
+ * ignores interrupts, so a watchdog closes the connection of a search whose
+ * thread was interrupted, and every search has a read timeout as well.
+ * Requests authenticate with the
+ * token the daemon left in tokenFile(port).
+ *
+ * Usage: java DaemonClient [--port P] [--root DIR]... [--substring] [--limit N] PATTERN
+ *        java DaemonClient [--port P] --status | --index DIR | --shutdown
+ */
+public class DaemonClient {
+    public static final int DEFAULT_PORT = Integer.getInteger("crawler.daemon.port", 7878);
+    static final String TOKEN_HEADER = "X-Crawler-Token";
+    public static final int DEFAULT_READ_TIMEOUT_MS = 60_000; // Long enough for the daemon to crawl an unknown root
+    private static final int PROBE_TIMEOUT_MS = 300;
+    private static final long WATCH_INTERVAL_MS = 50;
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "daemon-client-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The summary line the daemon sends after the last path
+    public static class Summary {
+        public final long matches;
+        public final String line;
+
+        Summary(long matches, String line) {
+            this.matches = matches;
+            this.line = line;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        List<String> roots = new ArrayList<>();
+        boolean substring = false;
+        int limit = 0;
+        String query = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--root": roots.add(args[++i]); break;
+                case "--substring": substring = true; break;
+                case "--limit": limit = Integer.parseInt(args[++i]); break;
+                case "--status": System.out.print(status(port)); return;
+                case "--index": System.out.print(index(port, args[++i])); return;
+                case "--shutdown": System.out.print(shutdown(port)); return;
+                default:
+                    if (args[i].startsWith("--")) {
+                        System.err.println("Unknown option: " + args[i]);
+                        System.exit(2);
+                    }
+                    query = args[i];
+            }
+        }
+        if (query == null) {
+            System.err.println("Missing pattern");
+            System.exit(2);
+        }
+
+        Summary summary = search(port, roots, query, substring, limit, DEFAULT_READ_TIMEOUT_MS, System.out::println);
+        System.err.println(summary.line);
+    }
+
+    // Token file of the daemon on port, readable by its user only
+    public static File tokenFile(int port) {
+        return new File(System.getProperty("user.home"), ".folder-crawler" + File.separator + "daemon-" + port + ".token");
+    }
+
+    // Whether a daemon answers on port; quick enough to call before every search
+    public static boolean isRunning(int port) {
+        if (!tokenFile(port).isFile()) return false;
+        try {
+            HttpURLConnection connection = open(port, "/status", "GET");
+            connection.setConnectTimeout(PROBE_TIMEOUT_MS);
+            connection.setReadTimeout(PROBE_TIMEOUT_MS);
+            try {
+                return connection.getResponseCode() == 200;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Searches the given roots (all indexed roots if empty). Without substring
+     * the pattern has the same meaning as in the GUI's search mode: comma
+     * separated exact names or globs. A limit of 0 means unlimited. Fails with
+     * SocketTimeoutException if the daemon sends nothing for readTimeoutMillis,
+     * and with InterruptedException once the calling thread is interrupted.
+     */
+    public static Summary search(int port, List<String> roots, String query, boolean substring, int limit,
+                                 int readTimeoutMillis, Consumer<String> onPath) throws IOException, InterruptedException {
+        StringBuilder path = new StringBuilder("/search?q=").append(encode(query));
+        for (String root : roots) {
+            path.append("&root=").append(encode(root));
+        }
+        if (substring) path.append("&substring=1");
+        if (limit > 0) path.append("&limit=").append(limit);
+
+        HttpURLConnection connection = open(port, path.toString(), "GET");
+        connection.setReadTimeout(readTimeoutMillis);
+        Thread caller = Thread.currentThread();
+        ScheduledFuture<?> watch = WATCHDOG.scheduleWithFixedDelay(() -> {
+            if (caller.isInterrupted()) connection.disconnect(); // Unblocks the read below
+        }, WATCH_INTERVAL_MS, WATCH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        try {
+            check(connection);
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                long matches = 0;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedException("Daemon query cancelled");
+                    }
+                    if (line.startsWith("# ")) {
+                        return new Summary(matches, line.substring(2));
+                    }
+                    matches++;
+                    onPath.accept(line);
+                }
+                throw new IOException("Daemon closed the stream after " + matches + " matches");
+            }
+        } catch (IOException e) {
+            if (caller.isInterrupted()) {
+                throw new InterruptedException("Daemon query cancelled");
+            }
+            throw e;
+        } finally {
+            watch.cancel(false);
+            connection.disconnect();
+        }
+    }
+
+    public static String status(int port) throws IOException {
+        return request(port, "/status", "GET");
+    }
+
+    public static String index(int port, String root) throws IOException {
+        return request(port, "/index?root=" + encode(root), "POST");
+    }
+
+    public static String shutdown(int port) throws IOException {
+        return request(port, "/shutdown", "POST");
+    }
+
+    private static String request(int port, String path, String method) throws IOException {
+        HttpURLConnection connection = open(port, path, method);
+        try {
+            check(connection);
+            try (InputStream in = connection.getInputStream()) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static HttpURLConnection open(int port, String path, String method) throws IOException {
+        String token;
+        try {
+            token = new String(Files.readAllBytes(tokenFile(port).toPath()), StandardCharsets.US_ASCII).trim();
+        } catch (NoSuchFileException e) {
+            throw new IOException("No search daemon on port " + port + " (" + tokenFile(port) + " missing)");
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty(TOKEN_HEADER, token);
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    // Turns an error status into an IOException carrying the daemon's message
+    private static void check(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        if (status == 200) return;
+        String message = "";
+        try (InputStream err = connection.getErrorStream()) {
+            if (err != null) message = new String(err.readAllBytes(), StandardCharsets.UTF_8).trim();
+        }
+        throw new IOException("Daemon answered " + status + (message.isEmpty() ? "" : ": " + message));
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
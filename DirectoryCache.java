@@ -0,0 +1,191 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of sorted directory listings, shared by the tree builder and
+ * both search engines. An entry is reused as long as the directory's mtime has not
+ * changed, so an unchanged directory costs one stat instead of a full listing.
+ */
+public class DirectoryCache {
+    private static final int DEFAULT_MAX_DIRECTORIES = 50_000;
+    private static final long DEFAULT_MAX_CHILDREN = 2_000_000;
+    // Listings taken within this window of the directory's mtime may miss a change in the same tick
+    private static final long RACY_WINDOW_MS = 2000;
+
+    private static final DirectoryCache SHARED = new DirectoryCache(DEFAULT_MAX_DIRECTORIES, DEFAULT_MAX_CHILDREN);
+
+    // Sorted children of one directory: folders first, then files, alphabetical (case-insensitive)
+    public static class Listing {
+        public final File[] files;
+        public final boolean[] directories;  // Target is a directory (links are resolved)
+        public final boolean[] links;        // Entry itself is a symbolic link
+        public final long[] sizes;
+        public final long[] lastModified;
+        public final long[] keyDevices;      // File key (device, inode) of directories, FileKeySet.NO_DEVICE if none
+        public final long[] keyInodes;
+        final long dirModified;  // mtime of the directory when it was listed
+        final long listedAt;
+
+        Listing(File[] files, boolean[] directories, boolean[] links, long[] sizes, long[] lastModified,
+                long[] keyDevices, long[] keyInodes, long dirModified, long listedAt) {
+            this.files = files;
+            this.directories = directories;
+            this.links = links;
+            this.sizes = sizes;
+            this.lastModified = lastModified;
+            this.keyDevices = keyDevices;
+            this.keyInodes = keyInodes;
+            this.dirModified = dirModified;
+            this.listedAt = listedAt;
+        }
+    }
+
+    private final int maxDirectories;
+    private final long maxChildren;
+    private final LinkedHashMap<String, Listing> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedChildren;
+    private long hits, misses, invalidations;
+
+    public DirectoryCache(int maxDirectories, long maxChildren) {
+        this.maxDirectories = maxDirectories;
+        this.maxChildren = maxChildren;
+    }
+
+    public static DirectoryCache shared() {
+        return SHARED;
+    }
+
+    // Returns the sorted listing of dir, or null if it is not a readable directory
+    public Listing list(File dir) {
+        String key = dir.getAbsolutePath();
+        long dirModified = dir.lastModified(); // The one stat needed to validate an entry
+
+        synchronized (this) {
+            Listing cached = entries.get(key);
+            if (cached != null) {
+                if (cached.dirModified == dirModified && dirModified < cached.listedAt - RACY_WINDOW_MS) {
+                    hits++;
+                    return cached;
+                }
+                invalidations++;
+                remove(key);
+            }
+            misses++;
+        }
+
+        Listing listing = read(dir, dirModified);
+        if (listing != null) {
+            put(key, listing);
+        }
+        return listing;
+    }
+
+    // Always re-reads dir (for callers that need current child sizes/mtimes) and updates the cache
+    public Listing refresh(File dir) {
+        Listing listing = read(dir, dir.lastModified());
+        if (listing != null) {
+            put(dir.getAbsolutePath(), listing);
+        }
+        return listing;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        cachedChildren = 0;
+    }
+
+    public synchronized String stats() {
+        return hits + " hits, " + misses + " misses (" + invalidations + " changed), "
+                + entries.size() + " directories cached";
+    }
+
+    private static Listing read(File dir, long dirModified) {
+        long listedAt = System.currentTimeMillis();
+        File[] children = dir.listFiles();
+        if (children == null) return null;
+
+        // One stat per child, then sort on the collected attributes
+        int n = children.length;
+        boolean[] isDir = new boolean[n];
+        boolean[] isLink = new boolean[n];
+        long[] size = new long[n];
+        long[] modified = new long[n];
+        long[] devices = new long[n];
+        long[] inodes = new long[n];
+        long[] key = new long[2];
+        for (int i = 0; i < n; i++) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(children[i].toPath(), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isSymbolicLink()) {
+                    isLink[i] = true;
+                    attrs = Files.readAttributes(children[i].toPath(), BasicFileAttributes.class); // Only links need a second stat
+                }
+                isDir[i] = attrs.isDirectory();
+                size[i] = attrs.size();
+                modified[i] = attrs.lastModifiedTime().toMillis();
+                if (isDir[i]) {
+                    FileKeySet.extract(attrs.fileKey(), key);
+                    devices[i] = key[0];
+                    inodes[i] = key[1];
+                }
+            } catch (IOException | InvalidPathException e) {
+                // Broken link, vanished entry or a name the platform charset cannot encode: keep it as a plain file
+            }
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, Comparator.<Integer, Boolean>comparing(i -> !isDir[i])
+                .thenComparing(i -> children[i].getName(), String.CASE_INSENSITIVE_ORDER));
+
+        File[] files = new File[n];
+        boolean[] directories = new boolean[n];
+        boolean[] links = new boolean[n];
+        long[] sizes = new long[n];
+        long[] lastModified = new long[n];
+        long[] keyDevices = new long[n];
+        long[] keyInodes = new long[n];
+        for (int i = 0; i < n; i++) {
+            int j = order[i];
+            files[i] = children[j];
+            directories[i] = isDir[j];
+            links[i] = isLink[j];
+            sizes[i] = size[j];
+            lastModified[i] = modified[j];
+            keyDevices[i] = devices[j];
+            keyInodes[i] = inodes[j];
+        }
+        return new Listing(files, directories, links, sizes, lastModified, keyDevices, keyInodes, dirModified, listedAt);
+    }
+
+    private synchronized void put(String key, Listing listing) {
+        remove(key);
+        entries.put(key, listing);
+        cachedChildren += listing.files.length;
+
+        // Evict least recently used directories until both limits hold
+        Iterator<Map.Entry<String, Listing>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxDirectories || cachedChildren > maxChildren) && it.hasNext()) {
+            Map.Entry<String, Listing> eldest = it.next();
+            if (eldest.getValue() == listing) continue;
+            cachedChildren -= eldest.getValue().files.length;
+            it.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Listing old = entries.remove(key);
+        if (old != null) {
+            cachedChildren -= old.files.length;
+        }
+    }
+}
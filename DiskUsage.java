@@ -0,0 +1,178 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disk-usage (du) mode: sums bytes and file counts for every subtree in parallel.
+ * Each directory is a fork-join task; child results are merged post-order into the
+ * matching TreeNodeData so the tree view can show the numbers while the crawl runs.
+ * Counts like du: a link is sized as the link itself and never followed, a file
+ * with several hard links is counted once, and a directory reached twice (bind
+ * mount) is entered once. Each entry gets one lstat of its own rather than going
+ * through the DirectoryCache, whose listing carries neither the link count nor
+ * the size of a link itself, and whose cached sizes may be stale.
+ */
+public class DiskUsage {
+    private static final long PROGRESS_INTERVAL_MS = 100; // Minimum time between two progress callbacks
+    private static final boolean UNIX_VIEW = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+    private static final String UNIX_ATTRIBUTES = "unix:size,isDirectory,nlink,dev,ino";
+
+    public static class Usage {
+        public final long bytes;
+        public final long files;
+
+        Usage(long bytes, long files) {
+            this.bytes = bytes;
+            this.files = files;
+        }
+    }
+
+    public static Usage compute(File root, Map<String, TreeNodeData> nodeMap, int parallelism, Runnable onProgress) {
+        TreeNodeData rootNode = nodeMap.get(root.getAbsolutePath());
+        if (rootNode == null) {
+            rootNode = nodeMap.get(root.getPath());
+        }
+
+        // Links are never directories here, so the guard only drops repeats
+        TraversalGuard guard = new TraversalGuard(TraversalGuard.LinkPolicy.SKIP);
+        guard.enterRoot(root);
+        Walk walk = new Walk(nodeMap, guard, onProgress);
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            UsageTask task = new UsageTask(root, rootNode, walk);
+            return pool.invoke(task);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // State shared by all tasks of one compute() call
+    private static class Walk {
+        final Map<String, TreeNodeData> nodeMap;
+        final TraversalGuard guard;
+        final FileKeySet hardLinks = new FileKeySet(); // Files with more than one link, guarded by itself
+        final Runnable onProgress;
+        final AtomicLong lastProgress = new AtomicLong();
+
+        Walk(Map<String, TreeNodeData> nodeMap, TraversalGuard guard, Runnable onProgress) {
+            this.nodeMap = nodeMap;
+            this.guard = guard;
+            this.onProgress = onProgress;
+        }
+
+        // Returns false if another link to the same file was counted already
+        boolean firstLink(long device, long inode) {
+            synchronized (hardLinks) {
+                return hardLinks.add(device, inode);
+            }
+        }
+    }
+
+    private static class UsageTask extends RecursiveTask<Usage> {
+        private static final long serialVersionUID = 1L;
+
+        private final File dir;
+        private final TreeNodeData node; // null when the directory is not shown in the tree
+        private final transient Walk walk;
+
+        UsageTask(File dir, TreeNodeData node, Walk walk) {
+            this.dir = dir;
+            this.node = node;
+            this.walk = walk;
+        }
+
+        @Override
+        protected Usage compute() {
+            File[] children = dir.listFiles();
+            if (children == null) {
+                return new Usage(0, 0);
+            }
+
+            long bytes = 0;
+            long files = 0;
+            List<UsageTask> subtasks = new ArrayList<>();
+
+            long[] key = new long[2];
+            for (File child : children) {
+                // Only look up tree nodes below a node that is itself in the tree
+                TreeNodeData childNode = node != null ? walk.nodeMap.get(child.getAbsolutePath()) : null;
+
+                // Attributes of the entry itself: a link is never followed
+                Path path = child.toPath();
+                long size;
+                boolean directory;
+                int links = 1;
+                try {
+                    if (UNIX_VIEW) {
+                        Map<String, Object> attrs = Files.readAttributes(path, UNIX_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+                        size = (Long) attrs.get("size");
+                        directory = (Boolean) attrs.get("isDirectory");
+                        links = (Integer) attrs.get("nlink");
+                        key[0] = (Long) attrs.get("dev");
+                        key[1] = (Long) attrs.get("ino");
+                    } else {
+                        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        size = attrs.size();
+                        directory = attrs.isDirectory();
+                        if (!FileKeySet.extract(attrs.fileKey(), key)) {
+                            key[0] = FileKeySet.NO_DEVICE;
+                        }
+                    }
+                } catch (IOException | UnsupportedOperationException e) {
+                    continue; // Vanished or unreadable entry
+                }
+
+                if (directory) {
+                    if (!walk.guard.admit(child, false, key[0], key[1])) continue;
+                    UsageTask subtask = new UsageTask(child, childNode, walk);
+                    subtask.fork();
+                    subtasks.add(subtask);
+                } else {
+                    // A file with several hard links is counted under the first link reached
+                    long count = links > 1 && !walk.firstLink(key[0], key[1]) ? 0 : 1;
+                    bytes += size * count;
+                    files += count;
+                    if (childNode != null) {
+                        childNode.usageBytes = size * count;
+                        childNode.usageFiles = count;
+                    }
+                }
+            }
+
+            // Files directly inside this directory are known before any subdirectory finishes
+            publish(bytes, files);
+
+            // Post-order merge: add every subtree as soon as it is complete
+            for (UsageTask subtask : subtasks) {
+                Usage sub = subtask.join();
+                bytes += sub.bytes;
+                files += sub.files;
+                publish(bytes, files);
+            }
+            return new Usage(bytes, files);
+        }
+
+        private void publish(long bytes, long files) {
+            if (node == null) return;
+            node.usageBytes = bytes;
+            node.usageFiles = files;
+
+            long now = System.currentTimeMillis();
+            long last = walk.lastProgress.get();
+            if (now - last >= PROGRESS_INTERVAL_MS && walk.lastProgress.compareAndSet(last, now)) {
+                walk.onProgress.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Finds groups of identical files among the paths produced by a traversal.
+ * Files are narrowed down in stages (size, partial hash, full hash) so only the
+ * remaining candidates are read completely.
+ */
+public class DuplicateFinder {
+    private static final int BLOCK_SIZE = 4096;        // Size of the first/last block used for the partial hash
+    private static final int BUFFER_SIZE = 64 * 1024;  // Read buffer for the full hash
+
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    public static class Result {
+        public final List<List<String>> groups;   // Each group holds paths with identical content
+        public final long bytesRead;              // Bytes actually read while hashing
+        public final long bytesTotal;             // Total size of all scanned files
+        public final int filesScanned;
+        public final int afterSizeStage;          // Candidates left after grouping by size
+        public final int afterPartialStage;       // Candidates left after the partial hash
+
+        Result(List<List<String>> groups, long bytesRead, long bytesTotal,
+               int filesScanned, int afterSizeStage, int afterPartialStage) {
+            this.groups = groups;
+            this.bytesRead = bytesRead;
+            this.bytesTotal = bytesTotal;
+            this.filesScanned = filesScanned;
+            this.afterSizeStage = afterSizeStage;
+            this.afterPartialStage = afterPartialStage;
+        }
+
+        public long wastedBytes() {
+            long wasted = 0;
+            for (List<String> group : groups) {
+                wasted += new File(group.get(0)).length() * (group.size() - 1);
+            }
+            return wasted;
+        }
+    }
+
+    public static Result find(Collection<String> paths, int threads, Consumer<String> statusUpdater)
+            throws InterruptedException {
+        AtomicLong bytesRead = new AtomicLong();
+
+        // Stage 1: group by size, only sizes that occur more than once can be duplicates
+        Map<Long, List<String>> bySize = new HashMap<>();
+        long bytesTotal = 0;
+        for (String path : paths) {
+            File file = new File(path);
+            if (!file.isFile()) continue;
+            long size = file.length();
+            bytesTotal += size;
+            bySize.computeIfAbsent(size, k -> new ArrayList<>()).add(path);
+        }
+
+        List<List<String>> groups = new ArrayList<>();
+        List<String> partialCandidates = new ArrayList<>();
+        for (Map.Entry<Long, List<String>> entry : bySize.entrySet()) {
+            if (entry.getValue().size() < 2) continue;
+            if (entry.getKey() == 0) {
+                groups.add(entry.getValue()); // Empty files are identical without reading them
+            } else {
+                partialCandidates.addAll(entry.getValue());
+            }
+        }
+        int afterSizeStage = partialCandidates.size();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            // Stage 2: hash the first and last block of every candidate
+            statusUpdater.accept("Duplicates: partial hash of " + partialCandidates.size() + " files");
+            Map<String, List<String>> byPartial = hashAll(pool, partialCandidates, true, bytesRead);
+
+            List<String> fullCandidates = new ArrayList<>();
+            for (List<String> group : byPartial.values()) {
+                if (group.size() < 2) continue;
+                // Small files were read completely by the partial hash, no need to read them again
+                if (new File(group.get(0)).length() <= 2L * BLOCK_SIZE) {
+                    groups.add(group);
+                } else {
+                    fullCandidates.addAll(group);
+                }
+            }
+            int afterPartialStage = fullCandidates.size();
+
+            // Stage 3: full hash only for files that still collide
+            statusUpdater.accept("Duplicates: full hash of " + fullCandidates.size() + " files");
+            for (List<String> group : hashAll(pool, fullCandidates, false, bytesRead).values()) {
+                if (group.size() > 1) {
+                    groups.add(group);
+                }
+            }
+
+            return new Result(groups, bytesRead.get(), bytesTotal, bySize.values().stream().mapToInt(List::size).sum(),
+                    afterSizeStage, afterPartialStage);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Hashes every path on the pool and groups the paths by "size:hash"
+    private static Map<String, List<String>> hashAll(ExecutorService pool, List<String> paths,
+                                                      boolean partial, AtomicLong bytesRead)
+            throws InterruptedException {
+        List<Future<String>> futures = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            futures.add(pool.submit(() -> hash(new File(path), partial, bytesRead)));
+        }
+
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < paths.size(); i++) {
+            String key;
+            try {
+                key = futures.get(i).get();
+            } catch (ExecutionException e) {
+                continue; // Unreadable file, cannot be compared
+            }
+            if (key != null) {
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(paths.get(i));
+            }
+        }
+        return groups;
+    }
+
+    private static String hash(File file, boolean partial, AtomicLong bytesRead) {
+        ByteBuffer buffer = BUFFER.get();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size = channel.size();
+            long read;
+            if (partial) {
+                read = readRange(channel, buffer, digest, 0, Math.min(BLOCK_SIZE, size));
+                if (size > BLOCK_SIZE) {
+                    long tailStart = Math.max(BLOCK_SIZE, size - BLOCK_SIZE);
+                    read += readRange(channel, buffer, digest, tailStart, size - tailStart);
+                }
+            } else {
+                read = readRange(channel, buffer, digest, 0, size);
+            }
+            bytesRead.addAndGet(read);
+            return size + ":" + HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long readRange(FileChannel channel, ByteBuffer buffer, MessageDigest digest,
+                                  long position, long length) throws IOException {
+        long read = 0;
+        while (read < length) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), length - read));
+            int n = channel.read(buffer, position + read);
+            if (n < 0) break;
+            buffer.flip();
+            digest.update(buffer);
+            read += n;
+        }
+        return read;
+    }
+}
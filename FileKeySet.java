@@ -0,0 +1,135 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Open-addressing hash set of file keys (device + inode), stored in two primitive
+ * long arrays. Used to recognise a directory that was already crawled through
+ * another path (symlink loop, bind mount) without keeping path strings around.
+ * Directories the platform gives no such key for (Windows) go into a path set
+ * that lives only as long as this set, see add(File, boolean).
+ */
+public class FileKeySet {
+    public static final long NO_DEVICE = -1; // Device of a directory without a (device, inode) key, see extract()
+
+    private long[] devices;
+    private long[] inodes;
+    private boolean[] used;
+    private int size;
+    private Set<Path> unkeyed; // Created on the first directory without a key
+
+    public FileKeySet() {
+        this(1024);
+    }
+
+    public FileKeySet(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1)) << 1;
+        devices = new long[capacity];
+        inodes = new long[capacity];
+        used = new boolean[capacity];
+    }
+
+    // Returns true if the key was not in the set yet
+    public boolean add(long device, long inode) {
+        if (size * 2 >= used.length) {
+            grow();
+        }
+        int mask = used.length - 1;
+        int slot = hash(device, inode) & mask;
+        while (used[slot]) {
+            if (devices[slot] == device && inodes[slot] == inode) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        devices[slot] = device;
+        inodes[slot] = inode;
+        size++;
+        return true;
+    }
+
+    /**
+     * Adds a directory without a (device, inode) key; returns true if it was not in
+     * the set yet. Only links and roots are resolved to their real path, everything
+     * else is identified by its absolute path without a file system call. Inside a
+     * followed link that path is not the real one, so a directory may be entered
+     * twice there, but every loop comes back through a link and is recognised.
+     */
+    public boolean add(File dir, boolean resolve) {
+        Path path = dir.toPath().toAbsolutePath().normalize();
+        if (resolve) {
+            try {
+                path = path.toRealPath();
+            } catch (IOException e) {
+                // Broken or unreadable: the absolute path still tells repeats of this link apart
+            }
+        }
+        if (unkeyed == null) {
+            unkeyed = new HashSet<>();
+        }
+        return unkeyed.add(path);
+    }
+
+    public int size() {
+        return size + (unkeyed == null ? 0 : unkeyed.size());
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(used, false);
+        size = 0;
+        unkeyed = null;
+    }
+
+    private void grow() {
+        long[] oldDevices = devices;
+        long[] oldInodes = inodes;
+        boolean[] oldUsed = used;
+        devices = new long[oldUsed.length * 2];
+        inodes = new long[oldUsed.length * 2];
+        used = new boolean[oldUsed.length * 2];
+        size = 0;
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                add(oldDevices[i], oldInodes[i]);
+            }
+        }
+    }
+
+    private static int hash(long device, long inode) {
+        long h = device * 0x9E3779B97F4A7C15L ^ inode;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Converts BasicFileAttributes.fileKey() into (device, inode), written to out[0..1].
+     * On Unix the key prints as "(dev=hex,ino=decimal)". Returns false, with device
+     * NO_DEVICE, when the platform gives no key or one of another format; such
+     * directories are added with add(File, boolean) instead.
+     */
+    public static boolean extract(Object fileKey, long[] out) {
+        if (fileKey != null) {
+            String text = fileKey.toString();
+            int dev = text.indexOf("dev=");
+            int ino = text.indexOf(",ino=");
+            if (dev >= 0 && ino > dev) {
+                try {
+                    out[0] = Long.parseUnsignedLong(text.substring(dev + 4, ino), 16);
+                    int end = text.indexOf(')', ino);
+                    out[1] = Long.parseLong(text.substring(ino + 5, end < 0 ? text.length() : end));
+                    return true;
+                } catch (NumberFormatException e) {
+                    // Unknown format, handled like a missing key
+                }
+            }
+        }
+        out[0] = NO_DEVICE;
+        out[1] = 0;
+        return false;
+    }
+}
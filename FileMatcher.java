@@ -0,0 +1,10 @@
+/**
+ * Decides which visited files are matches. Implemented by PatternSet (glob and
+ * exact patterns) and FuzzyQuery (ranked fuzzy names); called for every file the
+ * engines visit, so implementations must be cheap and thread-safe.
+ */
+public interface FileMatcher {
+
+    // True if the file should be added to the search results
+    boolean accept(String path, String fileName);
+}
@@ -0,0 +1,296 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ranked fuzzy file name search. A name scores as an in-order subsequence of the
+ * query, like fzf: every matched character counts, matches at word boundaries,
+ * camelCase humps and in consecutive runs earn bonuses and gaps cost a penalty.
+ * Names that are not a subsequence can still match within a small edit distance
+ * (typos, swapped letters). The best K matches are kept in a bounded min-heap
+ * while the crawl runs; scoring does not allocate.
+ */
+public class FuzzyQuery implements FileMatcher {
+    public static final int DEFAULT_TOP_K = 50;
+
+    private static final int NO_MATCH = Integer.MIN_VALUE;
+    private static final int SCORE_MATCH = 16;
+    private static final int BONUS_BOUNDARY = 8;     // After a separator or at the start of the name
+    private static final int BONUS_CAMEL = 7;        // Lower case followed by upper case
+    private static final int BONUS_CONSECUTIVE = 4;
+    private static final int FIRST_CHAR_MULTIPLIER = 2;
+    private static final int PENALTY_GAP_START = 3;
+    private static final int PENALTY_GAP_EXTENSION = 1;
+    private static final int PENALTY_EDIT = 24;
+
+    public static class Match {
+        public final String path;
+        public final int score;
+
+        Match(String path, int score) {
+            this.path = path;
+            this.score = score;
+        }
+    }
+
+    private final String query;
+    private final char[] pattern;  // Lowercased query
+    private final int maxEdits;
+    private final int topK;
+    private final Runnable onRankingChanged;
+    private final ThreadLocal<int[][]> rows = ThreadLocal.withInitial(() -> new int[3][64]);
+
+    // Min-heap on (score, path): the root is the weakest of the kept matches
+    private final int[] heapScores;
+    private final String[] heapPaths;
+    private int heapSize;
+    private volatile int threshold = NO_MATCH; // Score needed to enter the full heap
+
+    private final LongAdder namesScored = new LongAdder();
+    private final LongAdder candidates = new LongAdder();
+
+    public FuzzyQuery(String query, int topK, Runnable onRankingChanged) {
+        this.query = query;
+        this.pattern = PatternSet.fold(query).toCharArray(); // Same folding as the names, independent of the locale
+        this.maxEdits = pattern.length <= 3 ? 0 : pattern.length <= 6 ? 1 : 2;
+        this.topK = topK;
+        this.onRankingChanged = onRankingChanged;
+        heapScores = new int[topK];
+        heapPaths = new String[topK];
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public long namesScored() {
+        return namesScored.sum();
+    }
+
+    // Names that matched at all, whether or not they made it into the top K
+    public long candidates() {
+        return candidates.sum();
+    }
+
+    // Ranked results live in the heap, so nothing is added to the engine's result set
+    @Override
+    public boolean accept(String path, String fileName) {
+        namesScored.increment();
+        int score = score(fileName);
+        if (score == NO_MATCH) {
+            return false;
+        }
+        candidates.increment();
+        if (score >= threshold && offer(path, score) && onRankingChanged != null) {
+            onRankingChanged.run();
+        }
+        return false;
+    }
+
+    // Best matches first; ties go to the shorter, then alphabetically smaller path
+    public synchronized List<Match> ranked() {
+        List<Match> result = new ArrayList<>(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            result.add(new Match(heapPaths[i], heapScores[i]));
+        }
+        result.sort((a, b) -> weaker(a.score, a.path, b.score, b.path) ? 1 : weaker(b.score, b.path, a.score, a.path) ? -1 : 0);
+        return result;
+    }
+
+    // Score of a name, NO_MATCH if it neither contains the query as a subsequence nor is within the edit bound
+    public int score(String name) {
+        int score = subsequenceScore(name);
+        if (maxEdits > 0) {
+            score = Math.max(score, editScore(name));
+        }
+        return score;
+    }
+
+    public static boolean isMatch(int score) {
+        return score != NO_MATCH;
+    }
+
+    // ---- Subsequence scoring ----
+
+    private int subsequenceScore(String name) {
+        int n = name.length();
+        int m = pattern.length;
+        if (m == 0 || m > n) return NO_MATCH;
+
+        // Forward pass: earliest position where the whole query has been seen
+        int p = 0;
+        int end = -1;
+        for (int i = 0; i < n; i++) {
+            if (Character.toLowerCase(name.charAt(i)) == pattern[p] && ++p == m) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) return NO_MATCH;
+
+        // Backward pass from there: the latest start, which gives the shortest window
+        int start = 0;
+        p = m - 1;
+        for (int i = end; i >= 0; i--) {
+            if (Character.toLowerCase(name.charAt(i)) == pattern[p] && --p < 0) {
+                start = i;
+                break;
+            }
+        }
+
+        int score = 0;
+        p = 0;
+        boolean inGap = false;
+        int previousMatch = -2;
+        int runBonus = 0;
+        for (int i = start; i <= end && p < m; i++) {
+            if (Character.toLowerCase(name.charAt(i)) == pattern[p]) {
+                int bonus = bonusAt(name, i);
+                if (previousMatch == i - 1) {
+                    // A consecutive run keeps the bonus of its first character, so "Gui" beats "g_u_i"
+                    bonus = Math.max(bonus, Math.max(runBonus, BONUS_CONSECUTIVE));
+                } else {
+                    runBonus = bonus;
+                }
+                if (p == 0) bonus *= FIRST_CHAR_MULTIPLIER;
+                score += SCORE_MATCH + bonus;
+                previousMatch = i;
+                inGap = false;
+                p++;
+            } else {
+                score -= inGap ? PENALTY_GAP_EXTENSION : PENALTY_GAP_START;
+                inGap = true;
+            }
+        }
+        return score;
+    }
+
+    private static int bonusAt(String name, int i) {
+        if (i == 0) return BONUS_BOUNDARY;
+        char previous = name.charAt(i - 1);
+        if (previous == ' ' || previous == '_' || previous == '-' || previous == '.' || previous == '/' || previous == '\\') {
+            return BONUS_BOUNDARY;
+        }
+        if (Character.isLowerCase(previous) && Character.isUpperCase(name.charAt(i))) {
+            return BONUS_CAMEL;
+        }
+        return 0;
+    }
+
+    // ---- Bounded edit distance ----
+
+    // Typo match against the whole name or the name without its extension
+    private int editScore(String name) {
+        int distance = boundedDistance(name, name.length());
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            distance = Math.min(distance, boundedDistance(name, dot));
+        }
+        if (distance > maxEdits) return NO_MATCH;
+        return (SCORE_MATCH + BONUS_CONSECUTIVE) * pattern.length + BONUS_BOUNDARY - PENALTY_EDIT * distance;
+    }
+
+    // Optimal string alignment distance between the query and name[0, length), maxEdits + 1 if larger
+    private int boundedDistance(String name, int length) {
+        int m = pattern.length;
+        if (Math.abs(length - m) > maxEdits) return maxEdits + 1;
+
+        int[][] buffers = rows.get();
+        if (buffers[0].length <= m) {
+            buffers = new int[3][m + 1];
+            rows.set(buffers);
+        }
+        int[] beforePrevious = buffers[0];
+        int[] previous = buffers[1];
+        int[] current = buffers[2];
+        for (int j = 0; j <= m; j++) previous[j] = j;
+
+        for (int i = 1; i <= length; i++) {
+            char c = Character.toLowerCase(name.charAt(i - 1));
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= m; j++) {
+                int cost = c == pattern[j - 1] ? 0 : 1;
+                int d = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && c == pattern[j - 2] && Character.toLowerCase(name.charAt(i - 2)) == pattern[j - 1]) {
+                    d = Math.min(d, beforePrevious[j - 2] + 1); // Swapped neighbours
+                }
+                current[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > maxEdits) return maxEdits + 1; // Every alignment is already too expensive
+
+            int[] swap = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[m], maxEdits + 1);
+    }
+
+    // ---- Bounded top-K heap ----
+
+    private synchronized boolean offer(String path, int score) {
+        if (heapSize == topK && !weaker(heapScores[0], heapPaths[0], score, path)) {
+            return false;
+        }
+        for (int i = 0; i < heapSize; i++) {
+            if (heapPaths[i].equals(path)) return false; // Overlapping roots reach a file twice
+        }
+
+        if (heapSize < topK) {
+            heapScores[heapSize] = score;
+            heapPaths[heapSize] = path;
+            siftUp(heapSize++);
+        } else {
+            heapScores[0] = score;
+            heapPaths[0] = path;
+            siftDown(0);
+        }
+        if (heapSize == topK) {
+            threshold = heapScores[0];
+        }
+        return true;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!weaker(heapScores[i], heapPaths[i], heapScores[parent], heapPaths[parent])) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int weakest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < heapSize && weaker(heapScores[left], heapPaths[left], heapScores[weakest], heapPaths[weakest])) weakest = left;
+            if (right < heapSize && weaker(heapScores[right], heapPaths[right], heapScores[weakest], heapPaths[weakest])) weakest = right;
+            if (weakest == i) return;
+            swap(i, weakest);
+            i = weakest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int score = heapScores[a];
+        heapScores[a] = heapScores[b];
+        heapScores[b] = score;
+        String path = heapPaths[a];
+        heapPaths[a] = heapPaths[b];
+        heapPaths[b] = path;
+    }
+
+    private static boolean weaker(int scoreA, String pathA, int scoreB, String pathB) {
+        if (scoreA != scoreB) return scoreA < scoreB;
+        if (pathA.length() != pathB.length()) return pathA.length() > pathB.length();
+        return pathA.compareTo(pathB) > 0;
+    }
+}
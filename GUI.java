@@ -1,18 +1,27 @@
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.HyperlinkEvent;
 import java.awt.*;
 import java.io.File;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
  * Handles the graphical user interface and orchestrates search operations.
  */
 public class GUI extends JFrame { // Change MainTreeGUI to GUI and extend JFrame directly
-    private JTextField dirField, fileField;
-    private JCheckBox findAllCheck;
-    private JRadioButton bfsButton, dfsButton;
+    private JTextField dirField, fileField, timeBudgetField, maxResultsField;
+    private JCheckBox findAllCheck, resultCacheCheck, archiveCheck, daemonCheck;
+    private JRadioButton bfsButton, dfsButton, autoButton;
+    private JComboBox<String> modeBox;
+    private JComboBox<TraversalGuard.LinkPolicy> linkPolicyBox;
+    private JComboBox<String> exportBox;
     private JButton searchButton, clearButton;
     private VerticalTreePanel treePanel;
     private JScrollPane treeScroll; // Make JScrollPane a member to access its scrollbar
@@ -21,11 +30,38 @@ public class GUI extends JFrame { // Change MainTreeGUI to GUI and extend JFrame
 
     // Data for search and visualization
     private Map<String, TreeNodeData> nodeMap;
-    private Set<String> foundFiles;
-    private Set<String> visitedPaths;
-    private List<String> traversalOrder;
+    private OffHeapResultSet foundFiles;
+    private OffHeapResultSet visitedPaths;
+    private OffHeapList traversalOrder;
     private TreeNodeData rootNode;
     private long searchStartTime;
+    private DuplicateFinder.Result duplicateResult;
+    private DiskUsage.Usage diskUsage;
+    private boolean usageView; // Size and colour tree nodes by disk usage
+    private MultiRootSearch.Result multiRootResult;
+    private TraversalGuard treeGuard; // Link policy of the tree; the engines enter only the directories it admitted
+    private PatternSet patternSet; // All patterns of the query, matched in one traversal
+    private String resultCacheStatus;
+    private String exportStatus; // Where the crawl log of the last search went, null if not exported
+    private volatile boolean searchArchives; // Zip/jar entries become tree nodes and are searched
+    private final Map<String, AutoSearch.Decision> autoDecisions = new ConcurrentHashMap<>(); // Root -> strategy chosen by Auto
+    private String daemonStatus; // Why the search daemon was not used, null if it answered or was not asked
+    private final Map<String, DaemonClient.Summary> daemonSummaries = new ConcurrentHashMap<>(); // Root -> daemon's answer
+    private volatile FuzzyQuery fuzzyQuery;                          // Set in fuzzy mode, holds the live top-K ranking
+    private final Map<String, Integer> fuzzyScores = new LinkedHashMap<>(); // Final ranking: path -> score
+    private volatile TrigramIndex nameIndex;     // Names of the last crawl, queried on every keystroke
+    private long nameIndexBuildMillis;
+    private final AtomicLong instantGeneration = new AtomicLong(); // Bumped per keystroke, stale queries are dropped
+    private final ExecutorService instantExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "name-index-query");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Snapshot.Diff> snapshotDiffs = new ConcurrentHashMap<>();   // Root -> diff against its baseline snapshot
+    private final Map<String, Long> snapshotBaselines = new ConcurrentHashMap<>();        // Root -> capture time of that snapshot (0 = none)
+    private final Map<String, File> snapshotChoices = new ConcurrentHashMap<>();          // Root -> stored snapshot picked as the baseline
+    private long lastExecutionTime;
+    private int resultPage, traversalPage; // Pages shown in the results view
 
     // Layout constants
     private static final int NODE_WIDTH = 120;
@@ -33,12 +69,34 @@ public class GUI extends JFrame { // Change MainTreeGUI to GUI and extend JFrame
     private static final int SIBLING_SPACING = 30;
     private static final int LEVEL_SPACING = 80;
 
+    // Results view paging
+    private static final int RESULT_PAGE_SIZE = 100;
+    private static final int TRAVERSAL_PAGE_SIZE = 50;
+    private static final int INSTANT_RESULT_LIMIT = 100;
+
+    // Search modes
+    private static final String MODE_SEARCH = "Search";
+    private static final String MODE_DUPLICATES = "Find Duplicates";
+    private static final String MODE_DISK_USAGE = "Disk Usage (du)";
+    private static final String MODE_SNAPSHOT_DIFF = "Snapshot Diff";
+    private static final String MODE_FUZZY = "Fuzzy Search";
+
+    // Crawl log export
+    private static final String EXPORT_OFF = "Off";
+    private static final String EXPORT_NDJSON = "NDJSON";
+    private static final String EXPORT_BINARY = "Binary";
+
+    // Minimum time between live ranking updates in fuzzy mode
+    private static final long RANKING_REFRESH_MILLIS = 150;
+
     public GUI() { // Constructor
         super("Folder Crawler"); // Set frame title
-        nodeMap = new HashMap<>();
-        foundFiles = new HashSet<>();
-        visitedPaths = new HashSet<>();
-        traversalOrder = new ArrayList<>();
+        // Thread-safe collections: several roots are crawled concurrently
+        nodeMap = new ConcurrentHashMap<>();
+        // Visited paths, matches and traversal order grow with the crawl, so they live off-heap
+        visitedPaths = new OffHeapResultSet(OffHeapStore.DEFAULT_BUDGET);
+        foundFiles = new OffHeapResultSet(OffHeapStore.DEFAULT_BUDGET);
+        traversalOrder = new OffHeapList(OffHeapStore.DEFAULT_BUDGET);
         initializeGUI();
     }
 
@@ -76,28 +134,82 @@ public class GUI extends JFrame { // Change MainTreeGUI to GUI and extend JFrame
         controlPanel.setBorder(BorderFactory.createTitledBorder("Search Controls"));
         controlPanel.setPreferredSize(new Dimension(300, 0));
 
-        controlPanel.add(new JLabel("Root Directory:"));
+        controlPanel.add(new JLabel("Root Directories (separate with '" + File.pathSeparator + "'):"));
         dirField = new JTextField(System.getProperty("user.home"));
         controlPanel.add(dirField);
         controlPanel.add(Box.createVerticalStrut(10));
 
-        controlPanel.add(new JLabel("File Pattern:"));
+        controlPanel.add(new JLabel("File Pattern(s), comma separated:"));
         fileField = new JTextField("*.txt");
+        // Once a tree has been crawled, every keystroke queries the name index of that crawl
+        fileField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                queryNameIndex();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                queryNameIndex();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                queryNameIndex();
+            }
+        });
         controlPanel.add(fileField);
         controlPanel.add(Box.createVerticalStrut(10));
 
         findAllCheck = new JCheckBox("Find All Occurrences", true);
         controlPanel.add(findAllCheck);
+        resultCacheCheck = new JCheckBox("Use Result Cache", false);
+        controlPanel.add(resultCacheCheck);
+        archiveCheck = new JCheckBox("Search Inside Archives (zip/jar)", false);
+        controlPanel.add(archiveCheck);
+        daemonCheck = new JCheckBox("Query Search Daemon (if running)", false);
+        controlPanel.add(daemonCheck);
+        controlPanel.add(Box.createVerticalStrut(10));
+
+        controlPanel.add(new JLabel("Time Budget (s, 0 = none):"));
+        timeBudgetField = new JTextField("0");
+        controlPanel.add(timeBudgetField);
+        controlPanel.add(Box.createVerticalStrut(5));
+
+        controlPanel.add(new JLabel("Max Results (0 = none):"));
+        maxResultsField = new JTextField("0");
+        controlPanel.add(maxResultsField);
         controlPanel.add(Box.createVerticalStrut(10));
 
         controlPanel.add(new JLabel("Search Algorithm:"));
         bfsButton = new JRadioButton("BFS (Breadth-First)", true);
         dfsButton = new JRadioButton("DFS (Depth-First)");
+        autoButton = new JRadioButton("Auto (sampled per root)");
         ButtonGroup methodGroup = new ButtonGroup();
         methodGroup.add(bfsButton);
         methodGroup.add(dfsButton);
+        methodGroup.add(autoButton);
         controlPanel.add(bfsButton);
         controlPanel.add(dfsButton);
+        controlPanel.add(autoButton);
+        controlPanel.add(Box.createVerticalStrut(10));
+
+        controlPanel.add(new JLabel("Mode:"));
+        modeBox = new JComboBox<>(new String[] { MODE_SEARCH, MODE_FUZZY, MODE_DUPLICATES, MODE_DISK_USAGE, MODE_SNAPSHOT_DIFF });
+        modeBox.setMaximumSize(new Dimension(Integer.MAX_VALUE, 25));
+        controlPanel.add(modeBox);
+        controlPanel.add(Box.createVerticalStrut(10));
+
+        controlPanel.add(new JLabel("Symbolic Links:"));
+        linkPolicyBox = new JComboBox<>(TraversalGuard.LinkPolicy.values());
+        linkPolicyBox.setMaximumSize(new Dimension(Integer.MAX_VALUE, 25));
+        controlPanel.add(linkPolicyBox);
+        controlPanel.add(Box.createVerticalStrut(10));
+
+        controlPanel.add(new JLabel("Export Crawl Log:"));
+        exportBox = new JComboBox<>(new String[] { EXPORT_OFF, EXPORT_NDJSON, EXPORT_BINARY });
+        exportBox.setMaximumSize(new Dimension(Integer.MAX_VALUE, 25));
+        controlPanel.add(exportBox);
         controlPanel.add(Box.createVerticalStrut(15));
 
         searchButton = new JButton("🔍 Start Search");
@@ -154,9 +266,25 @@ public class GUI extends JFrame { // Change MainTreeGUI to GUI and extend JFrame
         notVisitedLabel.setForeground(Color.GRAY);
         legendPanel.add(notVisitedLabel);
 
+        JLabel changedLabel = new JLabel("● Changed since Snapshot (Purple)");
+        changedLabel.setForeground(new Color(148, 0, 211));
+        legendPanel.add(changedLabel);
+
         controlPanel.add(legendPanel);
 
         searchButton.addActionListener(e -> performSearch());
+        // Duplicate mode always finds all matches; the box shows that and keeps the user's choice for later
+        boolean[] findAllChoice = { findAllCheck.isSelected() };
+        modeBox.addActionListener(e -> {
+            boolean duplicates = MODE_DUPLICATES.equals(modeBox.getSelectedItem());
+            if (duplicates && findAllCheck.isEnabled()) {
+                findAllChoice[0] = findAllCheck.isSelected();
+                findAllCheck.setSelected(true);
+            } else if (!duplicates && !findAllCheck.isEnabled()) {
+                findAllCheck.setSelected(findAllChoice[0]);
+            }
+            findAllCheck.setEnabled(!duplicates);
+        });
         clearButton.addActionListener(e -> clearResults());
         zoomInButton.addActionListener(e -> { treePanel.zoomIn(); });
         zoomOutButton.addActionListener(e -> { treePanel.zoomOut(); });
@@ -173,8 +301,22 @@ public class GUI extends JFrame { // Change MainTreeGUI to GUI and extend JFrame
         resultPane.setEditable(false);
         resultPane.addHyperlinkListener(e -> {
             if (e.getEventType() == HyperlinkEvent.EventType.ACTIVATED) {
+                // Paging links for the matches and the traversal order
+                if (e.getDescription().startsWith("page:")) {
+                    resultPage = Integer.parseInt(e.getDescription().substring(5));
+                    updateResultsDisplay(lastExecutionTime);
+                    return;
+                }
+                if (e.getDescription().startsWith("trace:")) {
+                    traversalPage = Integer.parseInt(e.getDescription().substring(6));
+                    updateResultsDisplay(lastExecutionTime);
+                    return;
+                }
                 try {
-                    Desktop.getDesktop().open(new File(e.getDescription()));
+                    // Archive entries cannot be opened on their own: open the archive instead
+                    String target = e.getDescription();
+                    int entry = target.indexOf("!" + File.separator);
+                    Desktop.getDesktop().open(new File(entry > 0 ? target.substring(0, entry) : target));
                 } catch (Exception ex) {
                     JOptionPane.showMessageDialog(this, "Cannot open file: " + ex.getMessage());
                 }
@@ -188,25 +330,77 @@ public class GUI extends JFrame { // Change MainTreeGUI to GUI and extend JFrame
     }
 
     private void performSearch() {
-        String rootDir = dirField.getText().trim();
+        List<String> roots = parseRoots(dirField.getText());
         String targetFile = fileField.getText().trim();
-        boolean findAll = findAllCheck.isSelected();
+        String mode = (String) modeBox.getSelectedItem();
+        // Duplicates need every matching file; first-match would leave at most one per root
+        boolean findAll = findAllCheck.isSelected() || MODE_DUPLICATES.equals(mode);
+        String export = (String) exportBox.getSelectedItem();
+        TraversalGuard.LinkPolicy linkPolicy = (TraversalGuard.LinkPolicy) linkPolicyBox.getSelectedItem();
 
-        if (rootDir.isEmpty() || targetFile.isEmpty()) {
+        if (roots.isEmpty() || targetFile.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please enter both directory and file pattern to search!");
             return;
         }
 
-        File rootDirFile = new File(rootDir);
-        if (!rootDirFile.exists() || !rootDirFile.isDirectory()) {
-            JOptionPane.showMessageDialog(this, "Invalid directory path!");
+        for (String root : roots) {
+            File rootDirFile = new File(root);
+            if (!rootDirFile.exists() || !rootDirFile.isDirectory()) {
+                JOptionPane.showMessageDialog(this, "Invalid directory path: " + root);
+                return;
+            }
+        }
+
+        long timeBudgetMillis;
+        int maxResults;
+        try {
+            timeBudgetMillis = Math.round(Double.parseDouble(timeBudgetField.getText().trim()) * 1000);
+            maxResults = Integer.parseInt(maxResultsField.getText().trim());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Time budget and max results must be numbers!");
+            return;
+        }
+        snapshotChoices.clear();
+        if (MODE_SNAPSHOT_DIFF.equals(mode) && !chooseSnapshotBaselines(roots)) {
             return;
         }
 
         nodeMap.clear();
-        foundFiles.clear();
-        visitedPaths.clear();
-        traversalOrder.clear();
+        // Close instead of clear: the previous search's segments and spill files are given back, not kept
+        foundFiles.close();
+        visitedPaths.close();
+        traversalOrder.getStore().close();
+        duplicateResult = null;
+        diskUsage = null;
+        multiRootResult = null;
+        snapshotDiffs.clear();
+        snapshotBaselines.clear();
+        usageView = MODE_DISK_USAGE.equals(mode);
+        patternSet = PatternSet.compile(targetFile);
+        fuzzyQuery = null;
+        fuzzyScores.clear();
+        retireNameIndex();
+        instantGeneration.incrementAndGet();
+        resultCacheStatus = null;
+        exportStatus = null;
+        autoDecisions.clear();
+        daemonStatus = null;
+        daemonSummaries.clear();
+
+        // Only plain match results are cached; the other modes need the crawl itself
+        // Archive entries have no mtime of their own to validate a cached result against
+        searchArchives = archiveCheck.isSelected();
+        boolean cacheable = resultCacheCheck.isSelected() && !searchArchives && (MODE_SEARCH.equals(mode) || MODE_DUPLICATES.equals(mode));
+        // The daemon indexes plain files only and matches like the search mode
+        boolean daemonRequested = daemonCheck.isSelected() && MODE_SEARCH.equals(mode) && !searchArchives;
+        String cacheKey = ResultCache.key(roots, targetFile, findAll, algorithmName(), linkPolicy.name());
+
+        // One guard decides for the tree; the engines follow the tree instead of admitting directories in their own order
+        TraversalGuard treeGuard = new TraversalGuard(linkPolicy);
+        for (String root : roots) {
+            treeGuard.enterRoot(new File(root));
+        }
+        this.treeGuard = treeGuard;
 
         statusLabel.setText("Building tree structure...");
         searchButton.setEnabled(false);
@@ -216,39 +410,208 @@ public class GUI extends JFrame { // Change MainTreeGUI to GUI and extend JFrame
         SwingWorker<Void, String> worker = new SwingWorker<>() {
             @Override
             protected Void doInBackground() throws Exception {
-                // Build the complete tree structure first
-                buildCompleteTree(rootDir);
-
-                // Initialize search components for algorithm
-                Consumer<String> statusUpdater = (msg) -> {
-                    SwingUtilities.invokeLater(() -> {
-                        statusLabel.setText(msg);
-                        treePanel.repaint();
+                // Visits and matches are streamed to the export file while the engines produce them
+                if (!EXPORT_OFF.equals(export)) {
+                    CrawlExporter.Format format = EXPORT_BINARY.equals(export) ? CrawlExporter.Format.BINARY : CrawlExporter.Format.NDJSON;
+                    exporter = new CrawlExporter(CrawlExporter.defaultFile(format), format, roots, targetFile);
+                }
+                try {
+                    search();
+                } finally {
+                    if (exporter != null) {
+                        exporter.close();
+                        exportStatus = exporter.visits() + " visits and " + exporter.matches() + " matches ("
+                                + formatBytes(exporter.bytesWritten()) + ") written to " + exporter.getFile();
+                    }
+                }
+                return null;
+            }
+
+            private CrawlExporter exporter;
+
+            private void search() throws Exception {
+                ResultCache.Hit cached = cacheable ? ResultCache.shared().lookup(cacheKey) : null;
+                if (cached != null) {
+                    // No crawl, but the tree levels are still built so the matches can be shown in it
+                    Map<String, TreeNodeData> rootNodes = createRootNodes(roots);
+                    for (TreeNodeData node : rootNodes.values()) {
+                        buildRootSubtree(node, treeGuard);
+                    }
+                    // Only complete results are cached, so the first maxResults of them are what a crawl would keep
+                    List<String> matches = maxResults > 0 && cached.matches.size() > maxResults
+                            ? cached.matches.subList(0, maxResults) : cached.matches;
+                    foundFiles.addAll(matches);
+                    for (String path : matches) {
+                        patternSet.matches(new File(path).getName()); // Per-pattern hit counts
+                        if (exporter != null) exporter.matched(null, path);
+                    }
+                    resultCacheStatus = "hit, " + (cached.ageMillis / 1000) + " s old, " + cached.directoriesValidated
+                            + " directories on the match paths unchanged" + (cached.fromDisk ? " (loaded from disk)" : "")
+                            + (matches.size() < cached.matches.size() ? ", " + cached.matches.size() + " matches cut to Max Results" : "")
+                            + "; nothing was crawled, so no name index was built";
+                } else if (MODE_FUZZY.equals(mode)) {
+                    // Every visited file is scored; only the best ones are kept, then shown in rank order
+                    fuzzyQuery = new FuzzyQuery(targetFile, FuzzyQuery.DEFAULT_TOP_K, this::rankingChanged);
+                    crawl();
+                    for (FuzzyQuery.Match match : fuzzyQuery.ranked()) {
+                        fuzzyScores.put(match.path, match.score);
+                        foundFiles.add(match.path);
+                        if (exporter != null) exporter.matched(null, match.path);
+                    }
+                } else {
+                    crawl();
+                }
+
+                // Index the crawled names so later edits of the pattern are answered without a crawl
+                if (!traversalOrder.isEmpty()) {
+                    long indexStart = System.currentTimeMillis();
+                    // A snapshot: the next search clears traversalOrder while instant queries may still run
+                    nameIndex = TrigramIndex.snapshot(traversalOrder, path -> {
+                        TreeNodeData node = nodeMap.get(path);
+                        return node != null && (node.archiveEntry != null ? !node.archiveDirectory : node.file.isFile());
                     });
-                };
-                
+                    nameIndexBuildMillis = System.currentTimeMillis() - indexStart;
+                }
+
+                // Duplicate mode: compare the matched files after the traversal
+                if (MODE_DUPLICATES.equals(mode)) {
+                    duplicateResult = DuplicateFinder.find(new ArrayList<>(foundFiles), Runtime.getRuntime().availableProcessors(), statusUpdater);
+                }
+            }
+
+            private final AtomicLong lastRankingUpdate = new AtomicLong();
+
+            // Called from the crawl threads whenever the top K changes; throttled before reaching the EDT
+            private void rankingChanged() {
+                long now = System.currentTimeMillis();
+                long last = lastRankingUpdate.get();
+                if (now - last >= RANKING_REFRESH_MILLIS && lastRankingUpdate.compareAndSet(last, now)) {
+                    publish("ranking");
+                }
+            }
+
+            private final Consumer<String> statusUpdater = (msg) -> {
+                SwingUtilities.invokeLater(() -> {
+                    statusLabel.setText(msg);
+                    treePanel.repaint();
+                });
+            };
+
+            private void crawl() throws Exception {
+                // One node per root; with several roots they hang below a shared top node
+                Map<String, TreeNodeData> rootNodes = createRootNodes(roots);
+                FileMatcher matcher = fuzzyQuery != null ? fuzzyQuery : patternSet;
+                List<String> order = exporter != null ? exporter.tee(traversalOrder) : traversalOrder;
+
+                // A running daemon answers from its warm index; without one the roots are crawled as usual
+                boolean daemon = daemonRequested && DaemonClient.isRunning(DaemonClient.DEFAULT_PORT);
+                if (daemonRequested && !daemon) {
+                    daemonStatus = "not running on port " + DaemonClient.DEFAULT_PORT + ", roots crawled locally";
+                }
+
                 searchStartTime = System.currentTimeMillis(); // Reset start time for actual search duration
 
-                if (bfsButton.isSelected()) {
-                    BFS.search(rootDir, targetFile, findAll, nodeMap, visitedPaths, traversalOrder, foundFiles, statusUpdater, searchStartTime);
-                } else {
-                    DFS.search(new File(rootDir), targetFile, findAll, nodeMap, visitedPaths, traversalOrder, foundFiles, statusUpdater, searchStartTime);
+                AtomicLong usageBytes = new AtomicLong();
+                AtomicLong usageFiles = new AtomicLong();
+                Runnable usageProgress = () -> SwingUtilities.invokeLater(() -> {
+                    statusLabel.setText("Disk usage: " + formatBytes(rootNode.usageBytes) + " so far...");
+                    treePanel.repaint();
+                });
+
+                // Every root builds its own subtree and is crawled on the shared pool
+                int threads = Math.max(roots.size(), Runtime.getRuntime().availableProcessors());
+                multiRootResult = MultiRootSearch.search(roots, findAll, maxResults, timeBudgetMillis, threads, foundFiles,
+                        (root, path) -> {
+                            if (exporter != null) exporter.matched(root, path);
+                            publish(root + ": " + new File(path).getName());
+                        },
+                        (root, rootFoundFiles) -> {
+                            TreeNodeData node = rootNodes.get(root);
+                            buildRootSubtree(node, treeGuard);
+
+                            // Disk-usage mode replaces the search with a parallel size aggregation
+                            if (usageView) {
+                                int parallelism = Runtime.getRuntime().availableProcessors() * 2;
+                                DiskUsage.Usage usage = DiskUsage.compute(node.file, nodeMap, parallelism, usageProgress);
+                                usageBytes.addAndGet(usage.bytes);
+                                usageFiles.addAndGet(usage.files);
+                                if (rootNode != node) {
+                                    rootNode.usageBytes = usageBytes.get();
+                                    rootNode.usageFiles = usageFiles.get();
+                                }
+                                usageProgress.run();
+                            } else if (MODE_SNAPSHOT_DIFF.equals(mode)) {
+                                compareWithSnapshot(node.file);
+                            } else if (daemon) {
+                                // No crawl: the daemon streams the matches from its index, the tree shows only the built levels.
+                                // It gets what is left of the result and time budgets; a cancelled root closes its connection.
+                                int limit = !findAll ? 1 : maxResults > 0 ? Math.max(1, maxResults - foundFiles.size()) : 0;
+                                long timeLeft = timeBudgetMillis - (System.currentTimeMillis() - searchStartTime);
+                                int readTimeout = timeBudgetMillis > 0 ? (int) Math.max(1, Math.min(timeLeft, Integer.MAX_VALUE)) : DaemonClient.DEFAULT_READ_TIMEOUT_MS;
+                                DaemonClient.Summary summary = DaemonClient.search(DaemonClient.DEFAULT_PORT, List.of(root), targetFile, false,
+                                        limit, readTimeout, path -> {
+                                            patternSet.matches(new File(path).getName()); // Per-pattern hit counts
+                                            rootFoundFiles.add(path);
+                                        });
+                                daemonSummaries.put(root, summary);
+                            } else if (autoButton.isSelected()) {
+                                // Sample this root, pick order, threads and queue, and let the crawl adapt from there
+                                AutoSearch.Decision decision = AutoSearch.choose(AutoSearch.sample(node.file), findAll, nodeMap.size());
+                                autoDecisions.put(root, decision);
+                                statusUpdater.accept("Auto strategy for " + node.file.getName() + ": " + decision.describe());
+                                AutoSearch.search(node.file, matcher, findAll, nodeMap, visitedPaths, order, rootFoundFiles, statusUpdater, searchStartTime, decision);
+                            } else if (bfsButton.isSelected()) {
+                                BFS.search(node.file.getAbsolutePath(), matcher, findAll, nodeMap, visitedPaths, order, rootFoundFiles, statusUpdater, searchStartTime);
+                            } else {
+                                DFS.search(node.file, matcher, findAll, nodeMap, visitedPaths, order, rootFoundFiles, statusUpdater, searchStartTime);
+                            }
+                        });
+
+                if (usageView) {
+                    diskUsage = new DiskUsage.Usage(usageBytes.get(), usageFiles.get());
+                }
+
+                // Partial results (budget, timeout, failed root) must not be served from the cache later
+                if (cacheable) {
+                    boolean complete = !multiRootResult.timedOut && !multiRootResult.budgetReached
+                            && multiRootResult.rootStatus.values().stream().noneMatch(s -> s.startsWith("failed") || s.equals("timed out"));
+                    if (complete) {
+                        ResultCache.shared().store(cacheKey, new ArrayList<>(foundFiles), roots);
+                        resultCacheStatus = "miss, result stored";
+                    } else {
+                        resultCacheStatus = "miss, partial result not stored";
+                    }
                 }
-                return null;
             }
 
             @Override
             protected void process(java.util.List<String> chunks) {
                 long currentTime = System.currentTimeMillis() - searchStartTime;
                 timeLabel.setText("Runtime: " + currentTime + " ms");
+                if (fuzzyQuery != null) {
+                    showLiveRanking(fuzzyQuery);
+                    return;
+                }
+                statusLabel.setText("Match in " + chunks.get(chunks.size() - 1));
             }
 
             @Override
             protected void done() {
                 long totalTime = System.currentTimeMillis() - searchStartTime;
                 searchButton.setEnabled(true);
-                statusLabel.setText("Search completed. Found " + foundFiles.size() + " matches. Visited " + visitedPaths.size() + " paths.");
+                if (!snapshotBaselines.isEmpty()) {
+                    int changes = snapshotDiffs.values().stream().mapToInt(d -> d.changes.size()).sum();
+                    statusLabel.setText("Snapshot diff completed. " + changes + " changed entries.");
+                } else if (diskUsage != null) {
+                    statusLabel.setText("Disk usage completed. " + formatBytes(diskUsage.bytes) + " in " + diskUsage.files + " files.");
+                } else if (fuzzyQuery != null) {
+                    statusLabel.setText("Fuzzy search completed. " + fuzzyQuery.candidates() + " candidates, best " + foundFiles.size() + " ranked.");
+                } else {
+                    statusLabel.setText("Search completed. Found " + foundFiles.size() + " matches. Visited " + visitedPaths.size() + " paths.");
+                }
                 timeLabel.setText("Runtime: " + totalTime + " ms");
+                resultPage = 0;
+                traversalPage = 0;
                 updateResultsDisplay(totalTime);
                 treePanel.repaint();
             }
@@ -256,39 +619,212 @@ public class GUI extends JFrame { // Change MainTreeGUI to GUI and extend JFrame
         worker.execute();
     }
 
-    private void buildCompleteTree(String rootDir) {
-        rootNode = new TreeNodeData(new File(rootDir), 0, 0);
-        nodeMap.put(rootDir, rootNode);
-        buildTreeRecursive(rootNode, new File(rootDir), 1);
+    // Drops the name index; its path copy is freed on the query thread, after any query still using it
+    private void retireNameIndex() {
+        TrigramIndex old = nameIndex;
+        nameIndex = null;
+        if (old != null) {
+            instantExecutor.execute(old::close);
+        }
+    }
+
+    // Answers the current pattern from the name index on a background thread, latest keystroke wins
+    private void queryNameIndex() {
+        TrigramIndex index = nameIndex;
+        String query = fileField.getText().trim();
+        if (index == null || query.isEmpty() || !searchButton.isEnabled()) {
+            return;
+        }
+        long generation = instantGeneration.incrementAndGet();
+        instantExecutor.execute(() -> {
+            if (generation != instantGeneration.get()) return; // A newer keystroke is already queued
+            TrigramIndex.Result result = index.query(query);
+
+            StringBuilder html = new StringBuilder("<html><body><h3>Instant Results</h3>");
+            html.append("<p><b>").append(result.docs.length).append(" file(s)</b> matching <i>").append(query)
+                    .append("</i> among ").append(index.size()).append(" indexed names <small>(")
+                    .append(result.candidates).append(" candidates, ")
+                    .append(String.format("%.2f", result.nanos / 1_000_000.0)).append(" ms)</small></p>");
+            html.append("<p><small>Substring match, or whole-name glob when the pattern contains '*'. Press Search to crawl again.</small></p><ol>");
+            for (int i = 0; i < Math.min(result.docs.length, INSTANT_RESULT_LIMIT); i++) {
+                String path = index.path(result.docs[i]);
+                html.append("<li><a href='").append(path).append("'>").append(new File(path).getName())
+                        .append("</a><br><small>").append(path).append("</small></li>");
+            }
+            html.append("</ol>");
+            if (result.docs.length > INSTANT_RESULT_LIMIT) {
+                html.append("<p><i>... and ").append(result.docs.length - INSTANT_RESULT_LIMIT).append(" more</i></p>");
+            }
+            html.append("</body></html>");
+
+            SwingUtilities.invokeLater(() -> {
+                if (generation == instantGeneration.get() && searchButton.isEnabled()) {
+                    resultPane.setText(html.toString());
+                    resultPane.setCaretPosition(0);
+                    statusLabel.setText("Name index: " + result.docs.length + " matches for " + query);
+                }
+            });
+        });
+    }
+
+    // Shows the current top K while the crawl is still running
+    private void showLiveRanking(FuzzyQuery query) {
+        List<FuzzyQuery.Match> ranking = query.ranked();
+        StringBuilder html = new StringBuilder("<html><body><h3>Ranked Matches (searching...)</h3>");
+        html.append("<p><small>").append(query.namesScored()).append(" names scored, ")
+                .append(query.candidates()).append(" candidates</small></p><ol>");
+        for (FuzzyQuery.Match match : ranking) {
+            html.append("<li>").append(new File(match.path).getName())
+                    .append(" <small style='color: gray;'>score ").append(match.score).append("</small></li>");
+        }
+        html.append("</ol></body></html>");
+        resultPane.setText(html.toString());
+        if (!ranking.isEmpty()) {
+            statusLabel.setText("Best match so far: " + new File(ranking.get(0).path).getName());
+        }
+    }
+
+    // Asks which stored snapshot to diff against for every root with more than one; false if the user cancelled
+    private boolean chooseSnapshotBaselines(List<String> roots) {
+        for (String root : roots) {
+            String rootPath = new File(root).getAbsolutePath();
+            List<File> history = Snapshot.history(rootPath);
+            if (history.size() < 2) continue;
+
+            String[] options = new String[history.size()];
+            for (int i = 0; i < options.length; i++) {
+                options[i] = new Date(Snapshot.capturedAt(history.get(i))) + (i == 0 ? " (latest)" : "");
+            }
+            Object choice = JOptionPane.showInputDialog(this, "Compare " + rootPath + " against the snapshot of:",
+                    "Snapshot Baseline", JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+            if (choice == null) return false;
+            snapshotChoices.put(rootPath, history.get(Arrays.asList(options).indexOf(choice)));
+        }
+        return true;
+    }
+
+    // Captures the root, diffs it against the chosen or latest snapshot and adds the new one to the history
+    private void compareWithSnapshot(File root) throws java.io.IOException {
+        // The snapshot covers the whole root, not just the tree levels, so it walks with a guard of its own
+        TraversalGuard guard = new TraversalGuard(treeGuard.getPolicy());
+        guard.enterRoot(root);
+        Snapshot current = Snapshot.capture(root, guard);
+        File stored = snapshotChoices.get(current.rootPath);
+        if (stored == null) {
+            List<File> history = Snapshot.history(current.rootPath);
+            stored = history.isEmpty() ? null : history.get(0);
+        }
+        long baseline = 0;
+        if (stored != null) {
+            Snapshot previous = Snapshot.load(stored);
+            snapshotDiffs.put(current.rootPath, Snapshot.diff(previous, current));
+            baseline = previous.capturedAt;
+        }
+        snapshotBaselines.put(current.rootPath, baseline);
+        current.saveToHistory();
+        SwingUtilities.invokeLater(treePanel::repaint);
+    }
+
+    private static List<String> parseRoots(String text) {
+        List<String> roots = new ArrayList<>();
+        for (String root : text.split(java.util.regex.Pattern.quote(File.pathSeparator))) {
+            root = root.trim();
+            if (!root.isEmpty() && !roots.contains(root)) {
+                roots.add(root);
+            }
+        }
+        return roots;
+    }
+
+    private Map<String, TreeNodeData> createRootNodes(List<String> roots) {
+        Map<String, TreeNodeData> rootNodes = new LinkedHashMap<>();
+        if (roots.size() == 1) {
+            rootNode = new TreeNodeData(new File(roots.get(0)).getAbsoluteFile(), 0, 0);
+            rootNodes.put(roots.get(0), rootNode);
+        } else {
+            rootNode = new TreeNodeData(new File("Search Roots"), 0, 0);
+            for (int i = 0; i < roots.size(); i++) {
+                rootNodes.put(roots.get(i), new TreeNodeData(new File(roots.get(i)).getAbsoluteFile(), 1, i));
+            }
+        }
+        for (TreeNodeData node : rootNodes.values()) {
+            nodeMap.put(node.file.getAbsolutePath(), node);
+        }
+        return rootNodes;
+    }
+
+    // Builds the subtree of one root off the EDT, then attaches it to the visible tree
+    private void buildRootSubtree(TreeNodeData node, TraversalGuard guard) {
+        TreeNodeData treeRoot = rootNode;
+        buildTree(nodeMap, node, node.file, node.level + 1, guard, searchArchives);
 
         SwingUtilities.invokeLater(() -> {
+            if (rootNode != treeRoot) return; // Cleared or replaced in the meantime
+            if (node != treeRoot) {
+                treeRoot.addChild(node);
+                treeRoot.children.sort(Comparator.comparingInt(child -> child.index));
+            }
             calculateNodePositions();
             treePanel.setRootNode(rootNode); // Call setRootNode after positions are calculated
         });
     }
 
-    private void buildTreeRecursive(TreeNodeData parentNode, File parentFile, int level) {
+    // Adds the first levels below parentFile to nodeMap; package-private for the headless LinkPolicyCheck
+    static void buildTree(Map<String, TreeNodeData> nodeMap, TreeNodeData parentNode, File parentFile, int level,
+                          TraversalGuard guard, boolean searchArchives) {
         if (!parentFile.isDirectory() || level > 5) return;
 
-        File[] children = parentFile.listFiles();
-        if (children == null) return;
-
-        Arrays.sort(children, (a, b) -> {
-            if (a.isDirectory() && !b.isDirectory()) return -1;
-            if (!a.isDirectory() && b.isDirectory()) return 1;
-            return a.getName().compareToIgnoreCase(b.getName());
-        });
+        // Sorted listing is shared with the engines, so each directory is listed once per search
+        DirectoryCache.Listing listing = DirectoryCache.shared().list(parentFile);
+        if (listing == null) return;
+        File[] children = listing.files;
 
         int maxChildren = Math.min(children.length, 10);
 
+        // Start reading all archives of this folder in parallel before walking it
+        if (searchArchives) {
+            for (int i = 0; i < maxChildren; i++) {
+                if (!listing.directories[i] && ArchiveIndex.isArchive(children[i].getName())) {
+                    ArchiveIndex.shared().prefetch(children[i]);
+                }
+            }
+        }
+
         for (int i = 0; i < maxChildren; i++) {
             File child = children[i];
             TreeNodeData childNode = new TreeNodeData(child, level, i);
+            // Linked or already entered directories stay in the tree as leaves, and the engines do not enter them either
+            childNode.entered = listing.directories[i] && guard.admit(listing, i);
             parentNode.addChild(childNode);
             nodeMap.put(child.getAbsolutePath(), childNode);
 
-            if (child.isDirectory()) {
-                buildTreeRecursive(childNode, child, level + 1);
+            if (childNode.entered) {
+                buildTree(nodeMap, childNode, child, level + 1, guard, searchArchives);
+            } else if (searchArchives && !listing.directories[i] && ArchiveIndex.isArchive(child.getName())) {
+                ArchiveIndex.Listing archive = ArchiveIndex.shared().list(child);
+                if (archive != null) {
+                    buildArchiveTree(nodeMap, childNode, child, archive, "", level + 1);
+                }
+            }
+        }
+    }
+
+    // Entries of an archive below its node, with the same depth and width limits as folders
+    private static void buildArchiveTree(Map<String, TreeNodeData> nodeMap, TreeNodeData parentNode, File archiveFile, ArchiveIndex.Listing archive, String folder, int level) {
+        if (level > 5) return;
+        int[] entries = archive.children(folder);
+        int maxChildren = Math.min(entries.length, 10);
+
+        for (int i = 0; i < maxChildren; i++) {
+            int entry = entries[i];
+            TreeNodeData childNode = new TreeNodeData(new File(ArchiveIndex.entryPath(archiveFile, archive.names[entry])), level, i);
+            childNode.archiveEntry = archive.names[entry];
+            childNode.archiveDirectory = archive.directories[entry];
+            parentNode.addChild(childNode);
+            nodeMap.put(childNode.file.getAbsolutePath(), childNode);
+
+            if (archive.directories[entry]) {
+                buildArchiveTree(nodeMap, childNode, archiveFile, archive, archive.names[entry], level + 1);
             }
         }
     }
@@ -363,31 +899,121 @@ public class GUI extends JFrame { // Change MainTreeGUI to GUI and extend JFrame
     }
 
     private void updateResultsDisplay(long executionTime) {
+        lastExecutionTime = executionTime;
         StringBuilder htmlResults = new StringBuilder("<html><body>");
-        htmlResults.append("<h3>Search Results</h3>");
+        htmlResults.append(fuzzyQuery != null ? "<h3>Ranked Results</h3>" : "<h3>Search Results</h3>");
 
         if (foundFiles.isEmpty()) {
             htmlResults.append("<p><i>No files found matching the search criteria.</i></p>");
         } else {
-            htmlResults.append("<p><b>Found ").append(foundFiles.size()).append(" file(s):</b></p>");
-            htmlResults.append("<ol>");
-            for (String path : foundFiles) {
+            int from = resultPage * RESULT_PAGE_SIZE;
+            int to = Math.min(foundFiles.size(), from + RESULT_PAGE_SIZE);
+            htmlResults.append("<p><b>Found ").append(foundFiles.size()).append(" file(s):</b>");
+            appendPager(htmlResults, "page:", resultPage, foundFiles.size(), RESULT_PAGE_SIZE);
+            htmlResults.append("</p>");
+            htmlResults.append("<ol start='").append(from + 1).append("'>");
+            boolean multiRoot = multiRootResult != null && multiRootResult.rootStatus.size() > 1;
+            for (int i = from; i < to; i++) {
+                String path = foundFiles.get(i);
                 File file = new File(path);
                 htmlResults.append("<li><a href='").append(path).append("'>")
-                        .append(file.getName()).append("</a><br><small>")
-                        .append(path).append("</small></li>");
+                        .append(file.getName()).append("</a>");
+                if (multiRoot && multiRootResult.matchRoots.containsKey(path)) {
+                    htmlResults.append(" <small style='color: gray;'>[").append(multiRootResult.matchRoots.get(path)).append("]</small>");
+                }
+                if (fuzzyQuery != null) {
+                    htmlResults.append(" <small style='color: teal;'>score ").append(fuzzyScores.get(path)).append("</small>");
+                } else if (patternSet.size() > 1) {
+                    htmlResults.append(" <small style='color: teal;'>").append(String.join(", ", patternSet.matchingPatterns(file.getName()))).append("</small>");
+                }
+                htmlResults.append("<br><small>").append(path).append("</small></li>");
             }
             htmlResults.append("</ol>");
         }
 
+        if (fuzzyQuery == null && patternSet != null && patternSet.size() > 1) {
+            htmlResults.append("<table border='1' style='border-collapse: collapse;'>");
+            htmlResults.append("<tr><th align='left'>Pattern</th><th align='left'>Matches</th></tr>");
+            for (int i = 0; i < patternSet.size(); i++) {
+                htmlResults.append("<tr><td>").append(patternSet.pattern(i)).append("</td><td>").append(patternSet.hits(i)).append("</td></tr>");
+            }
+            htmlResults.append("</table>");
+        }
+
+        if (duplicateResult != null) {
+            appendDuplicateResults(htmlResults);
+        }
+        if (diskUsage != null) {
+            appendDiskUsageResults(htmlResults);
+        }
+        if (!snapshotBaselines.isEmpty()) {
+            appendSnapshotResults(htmlResults);
+        }
+
         htmlResults.append("<hr><h3>Performance Analysis</h3>");
         htmlResults.append("<table border='1' style='border-collapse: collapse; width: 100%;'>");
         htmlResults.append("<tr><th align='left'>Metric</th><th align='left'>Value</th></tr>");
-        htmlResults.append("<tr><td><b>Algorithm Used</b></td><td>").append(bfsButton.isSelected() ? "BFS (Breadth-First Search)" : "DFS (Depth-First Search)").append("</td></tr>");
+        htmlResults.append("<tr><td><b>Algorithm Used</b></td><td>").append(bfsButton.isSelected() ? "BFS (Breadth-First Search)" : dfsButton.isSelected() ? "DFS (Depth-First Search)" : "Auto (sampled per root)").append("</td></tr>");
+        for (Map.Entry<String, AutoSearch.Decision> entry : autoDecisions.entrySet()) {
+            AutoSearch.Decision decision = entry.getValue();
+            htmlResults.append("<tr><td><b>Auto Strategy</b>");
+            if (autoDecisions.size() > 1) {
+                htmlResults.append("<br><small>").append(entry.getKey()).append("</small>");
+            }
+            htmlResults.append("</td><td>").append(decision.describe()).append("<ul>");
+            synchronized (decision.reasons) {
+                for (String reason : decision.reasons) {
+                    htmlResults.append("<li><small>").append(reason).append("</small></li>");
+                }
+            }
+            synchronized (decision.switches) {
+                for (String change : decision.switches) {
+                    htmlResults.append("<li><small><b>Switched</b> ").append(change).append("</small></li>");
+                }
+            }
+            htmlResults.append("</ul></td></tr>");
+        }
         htmlResults.append("<tr><td><b>Execution Time</b></td><td>").append(executionTime).append(" ms</td></tr>");
         htmlResults.append("<tr><td><b>Nodes Visited</b></td><td>").append(visitedPaths.size()).append("</td></tr>");
         htmlResults.append("<tr><td><b>Total Nodes in Tree</b></td><td>").append(nodeMap.size()).append("</td></tr>");
         htmlResults.append("<tr><td><b>Files Found</b></td><td>").append(foundFiles.size()).append("</td></tr>");
+        htmlResults.append("<tr><td><b>Off-heap Storage</b></td><td>")
+                .append(formatBytes(visitedPaths.getStore().inMemoryBytes() + foundFiles.getStore().inMemoryBytes() + traversalOrder.getStore().inMemoryBytes())).append(" in memory, ")
+                .append(formatBytes(visitedPaths.getStore().spilledBytes() + foundFiles.getStore().spilledBytes() + traversalOrder.getStore().spilledBytes())).append(" spilled to disk</td></tr>");
+        if (fuzzyQuery != null) {
+            htmlResults.append("<tr><td><b>Fuzzy Ranking</b></td><td>").append(fuzzyQuery.namesScored()).append(" names scored, ")
+                    .append(fuzzyQuery.candidates()).append(" candidates, top ").append(fuzzyQuery.getTopK()).append(" kept</td></tr>");
+        }
+        if (resultCacheStatus != null) {
+            htmlResults.append("<tr><td><b>Result Cache</b></td><td>").append(resultCacheStatus)
+                    .append("<br><small>").append(ResultCache.shared().stats()).append("</small></td></tr>");
+        }
+        if (exportStatus != null) {
+            htmlResults.append("<tr><td><b>Crawl Log Export</b></td><td>").append(exportStatus).append("</td></tr>");
+        }
+        if (daemonStatus != null) {
+            htmlResults.append("<tr><td><b>Search Daemon</b></td><td>").append(daemonStatus).append("</td></tr>");
+        }
+        for (Map.Entry<String, DaemonClient.Summary> entry : daemonSummaries.entrySet()) {
+            htmlResults.append("<tr><td><b>Search Daemon</b>");
+            if (daemonSummaries.size() > 1) {
+                htmlResults.append("<br><small>").append(entry.getKey()).append("</small>");
+            }
+            htmlResults.append("</td><td>").append(entry.getValue().matches).append(" matches from the warm index")
+                    .append("<br><small>").append(entry.getValue().line).append("</small></td></tr>");
+        }
+        if (nameIndex != null) {
+            htmlResults.append("<tr><td><b>Name Index</b></td><td>").append(nameIndex.size()).append(" names, ")
+                    .append(nameIndex.trigramCount()).append(" trigrams, ").append(formatBytes(nameIndex.memoryBytes()))
+                    .append(", built in ").append(nameIndexBuildMillis).append(" ms<br><small>Edit the pattern to query it instantly</small></td></tr>");
+        }
+        if (searchArchives) {
+            htmlResults.append("<tr><td><b>Archives</b></td><td>").append(ArchiveIndex.shared().stats()).append("</td></tr>");
+        }
+        htmlResults.append("<tr><td><b>Directory Cache</b></td><td>").append(DirectoryCache.shared().stats()).append("</td></tr>");
+        if (treeGuard != null) {
+            htmlResults.append("<tr><td><b>Link Handling</b></td><td>").append(treeGuard.stats()).append("</td></tr>");
+        }
         
         // --- START PERUBAHAN UNTUK SEARCH EFFICIENCY ---
         if (nodeMap.size() > 0) {
@@ -410,28 +1036,188 @@ public class GUI extends JFrame { // Change MainTreeGUI to GUI and extend JFrame
         
         htmlResults.append("</table>");
 
-        htmlResults.append("<hr><h3>Traversal Order (").append(bfsButton.isSelected() ? "BFS" : "DFS").append(")</h3>");
-        htmlResults.append("<p><small>Order: ");
-        for (int i = 0; i < Math.min(traversalOrder.size(), 15); i++) {
+        if (multiRootResult != null && multiRootResult.rootStatus.size() > 1) {
+            htmlResults.append("<hr><h3>Roots</h3>");
+            if (multiRootResult.timedOut) {
+                htmlResults.append("<p><i>Time budget exhausted, results are partial.</i></p>");
+            } else if (multiRootResult.budgetReached) {
+                htmlResults.append("<p><i>Result budget reached, results are partial.</i></p>");
+            }
+            htmlResults.append("<table border='1' style='border-collapse: collapse; width: 100%;'>");
+            htmlResults.append("<tr><th align='left'>Root</th><th align='left'>Status</th><th align='left'>Matches</th></tr>");
+            for (Map.Entry<String, String> entry : multiRootResult.rootStatus.entrySet()) {
+                long matches = multiRootResult.matchRoots.values().stream().filter(entry.getKey()::equals).count();
+                htmlResults.append("<tr><td>").append(entry.getKey()).append("</td><td>").append(entry.getValue())
+                        .append("</td><td>").append(matches).append("</td></tr>");
+            }
+            htmlResults.append("</table>");
+        } else if (multiRootResult != null && (multiRootResult.timedOut || multiRootResult.budgetReached)) {
+            htmlResults.append("<p><i>Search stopped by the ").append(multiRootResult.timedOut ? "time" : "result")
+                    .append(" budget, results are partial.</i></p>");
+        }
+
+        htmlResults.append("<hr><h3>Traversal Order (").append(algorithmName()).append(")</h3>");
+        int traversalFrom = traversalPage * TRAVERSAL_PAGE_SIZE;
+        int traversalTo = Math.min(traversalOrder.size(), traversalFrom + TRAVERSAL_PAGE_SIZE);
+        htmlResults.append("<p><small>Order (").append(traversalFrom + 1).append("-").append(traversalTo)
+                .append(" of ").append(traversalOrder.size()).append("): ");
+        for (int i = traversalFrom; i < traversalTo; i++) {
             String path = traversalOrder.get(i);
             File file = new File(path);
-            if (i > 0) htmlResults.append(" → ");
+            if (i > traversalFrom) htmlResults.append(" → ");
             htmlResults.append("<span style='color: blue;'>").append(file.getName()).append("</span>");
         }
-        if (traversalOrder.size() > 15) {
-            htmlResults.append(" → <i>... and ").append(traversalOrder.size() - 15).append(" more</i>");
-        }
-        htmlResults.append("</small></p>");
+        htmlResults.append("</small>");
+        appendPager(htmlResults, "trace:", traversalPage, traversalOrder.size(), TRAVERSAL_PAGE_SIZE);
+        htmlResults.append("</p>");
 
         htmlResults.append("</body></html>");
         resultPane.setText(htmlResults.toString());
     }
 
+    private String algorithmName() {
+        return bfsButton.isSelected() ? "BFS" : dfsButton.isSelected() ? "DFS" : "Auto";
+    }
+
+    // Previous/next links, handled by the hyperlink listener of the result pane
+    private static void appendPager(StringBuilder htmlResults, String prefix, int page, int total, int pageSize) {
+        int pages = (total + pageSize - 1) / pageSize;
+        if (pages <= 1) return;
+        htmlResults.append(" <small>");
+        if (page > 0) {
+            htmlResults.append("<a href='").append(prefix).append(page - 1).append("'>« Previous</a> ");
+        }
+        htmlResults.append("page ").append(page + 1).append(" of ").append(pages);
+        if (page < pages - 1) {
+            htmlResults.append(" <a href='").append(prefix).append(page + 1).append("'>Next »</a>");
+        }
+        htmlResults.append("</small>");
+    }
+
+    private void appendDuplicateResults(StringBuilder htmlResults) {
+        htmlResults.append("<hr><h3>Duplicate Groups</h3>");
+        if (duplicateResult.groups.isEmpty()) {
+            htmlResults.append("<p><i>No duplicate files found.</i></p>");
+        } else {
+            htmlResults.append("<p><b>").append(duplicateResult.groups.size()).append(" group(s), ")
+                    .append(formatBytes(duplicateResult.wastedBytes())).append(" reclaimable:</b></p>");
+            htmlResults.append("<ol>");
+            for (List<String> group : duplicateResult.groups) {
+                htmlResults.append("<li>").append(group.size()).append(" × ")
+                        .append(formatBytes(new File(group.get(0)).length())).append("<br><small>");
+                for (String path : group) {
+                    htmlResults.append("<a href='").append(path).append("'>").append(path).append("</a><br>");
+                }
+                htmlResults.append("</small></li>");
+            }
+            htmlResults.append("</ol>");
+        }
+
+        htmlResults.append("<table border='1' style='border-collapse: collapse; width: 100%;'>");
+        htmlResults.append("<tr><th align='left'>Stage</th><th align='left'>Value</th></tr>");
+        htmlResults.append("<tr><td><b>Files Scanned</b></td><td>").append(duplicateResult.filesScanned).append("</td></tr>");
+        htmlResults.append("<tr><td><b>Candidates after Size</b></td><td>").append(duplicateResult.afterSizeStage).append("</td></tr>");
+        htmlResults.append("<tr><td><b>Candidates after Partial Hash</b></td><td>").append(duplicateResult.afterPartialStage).append("</td></tr>");
+        htmlResults.append("<tr><td><b>Bytes Read</b></td><td>").append(formatBytes(duplicateResult.bytesRead))
+                .append(" of ").append(formatBytes(duplicateResult.bytesTotal)).append("</td></tr>");
+        htmlResults.append("</table>");
+    }
+
+    private void appendDiskUsageResults(StringBuilder htmlResults) {
+        htmlResults.append("<hr><h3>Disk Usage</h3>");
+        htmlResults.append("<p><b>Total:</b> ").append(formatBytes(diskUsage.bytes))
+                .append(" in ").append(diskUsage.files).append(" file(s)</p>");
+
+        // Largest entries shown in the tree, excluding the root itself
+        List<TreeNodeData> largest = new ArrayList<>(nodeMap.values());
+        largest.remove(rootNode);
+        largest.sort((a, b) -> Long.compare(b.usageBytes, a.usageBytes));
+
+        htmlResults.append("<table border='1' style='border-collapse: collapse; width: 100%;'>");
+        htmlResults.append("<tr><th align='left'>Path</th><th align='left'>Size</th><th align='left'>Files</th><th align='left'>Share</th></tr>");
+        for (int i = 0; i < Math.min(largest.size(), 10); i++) {
+            TreeNodeData node = largest.get(i);
+            double share = diskUsage.bytes > 0 ? 100.0 * node.usageBytes / diskUsage.bytes : 0.0;
+            htmlResults.append("<tr><td><small>").append(node.file.getAbsolutePath()).append("</small></td><td>")
+                    .append(formatBytes(node.usageBytes)).append("</td><td>").append(node.usageFiles)
+                    .append("</td><td>").append(String.format("%.1f%%", share)).append("</td></tr>");
+        }
+        htmlResults.append("</table>");
+    }
+
+    private void appendSnapshotResults(StringBuilder htmlResults) {
+        htmlResults.append("<hr><h3>Changes since Snapshot</h3>");
+        for (Map.Entry<String, Long> baseline : snapshotBaselines.entrySet()) {
+            String root = baseline.getKey();
+            Snapshot.Diff diff = snapshotDiffs.get(root);
+            if (diff == null) {
+                htmlResults.append("<p><b>").append(root).append(":</b> no previous snapshot, baseline saved.</p>");
+                continue;
+            }
+            htmlResults.append("<p><b>").append(root).append(":</b> ").append(diff.changes.size())
+                    .append(" change(s) since ").append(new Date(baseline.getValue()))
+                    .append(" <small>(").append(diff.nodesCompared).append(" nodes compared, ")
+                    .append(diff.subtreesSkipped).append(" unchanged subtrees skipped)</small></p>");
+            if (!diff.changes.isEmpty()) {
+                htmlResults.append("<ul>");
+                int shown = 0;
+                for (Map.Entry<String, Snapshot.Change> change : diff.changes.entrySet()) {
+                    if (shown++ == 100) {
+                        htmlResults.append("<li><i>... and ").append(diff.changes.size() - 100).append(" more</i></li>");
+                        break;
+                    }
+                    htmlResults.append("<li><b>").append(change.getValue()).append("</b> <small>")
+                            .append(change.getKey()).append("</small></li>");
+                }
+                htmlResults.append("</ul>");
+            }
+        }
+    }
+
+    // Snapshot-diff state of a tree node, or null if it is unchanged
+    private Snapshot.Change snapshotChange(String path) {
+        for (Snapshot.Diff diff : snapshotDiffs.values()) {
+            Snapshot.Change change = diff.changes.get(path);
+            if (change != null) return change;
+            if (diff.changedDirectories.contains(path)) return Snapshot.Change.MODIFIED;
+        }
+        return null;
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        String[] units = { "KB", "MB", "GB", "TB", "PB" };
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format("%.1f %s", value, units[unit]);
+    }
+
     private void clearResults() {
         nodeMap.clear();
-        foundFiles.clear();
-        visitedPaths.clear();
-        traversalOrder.clear();
+        foundFiles.close();
+        visitedPaths.close();
+        traversalOrder.getStore().close();
+        duplicateResult = null;
+        diskUsage = null;
+        multiRootResult = null;
+        snapshotDiffs.clear();
+        snapshotBaselines.clear();
+        treeGuard = null;
+        patternSet = null;
+        fuzzyQuery = null;
+        fuzzyScores.clear();
+        retireNameIndex();
+        instantGeneration.incrementAndGet();
+        resultCacheStatus = null;
+        exportStatus = null;
+        autoDecisions.clear();
+        daemonStatus = null;
+        daemonSummaries.clear();
+        usageView = false;
         rootNode = null;
 
         treePanel.setRootNode(null); // This will also reset panOffset
@@ -572,18 +1358,33 @@ public class GUI extends JFrame { // Change MainTreeGUI to GUI and extend JFrame
             if (foundFiles.contains(path)) {
                 nodeColor = new Color(220, 20, 20); // Bright red for found files
             } else if (visitedPaths.contains(path)) {
-                nodeColor = node.file.isDirectory() ?
+                nodeColor = node.file.isDirectory() || node.archiveDirectory ?
                         new Color(34, 139, 34) :     // Forest green for visited directories
                         new Color(70, 130, 180);      // Steel blue for visited files
             } else {
                 nodeColor = new Color(180, 180, 180); // Light gray for unvisited
             }
 
+            Snapshot.Change change = snapshotDiffs.isEmpty() ? null : snapshotChange(path);
+            if (change != null) {
+                nodeColor = change == Snapshot.Change.ADDED ?
+                        new Color(186, 85, 211) :     // Medium orchid for entries added since the snapshot
+                        new Color(148, 0, 211);       // Dark violet for modified entries and their directories
+            }
+
             if (node.level == 0) {
                 nodeColor = new Color(255, 165, 0); // Orange for root
             }
 
             int circleDiameter = 40; // Adjusted for better visual size
+            if (usageView && rootNode.usageBytes > 0) {
+                // Disk-usage view: bigger and redder nodes take more space
+                double usageShare = Math.min(1.0, (double) node.usageBytes / rootNode.usageBytes);
+                circleDiameter = 20 + (int) Math.round(40 * Math.sqrt(usageShare));
+                if (node.level != 0) {
+                    nodeColor = new Color(70 + (int) (185 * usageShare), 130 - (int) (110 * usageShare), 180 - (int) (160 * usageShare));
+                }
+            }
             int circleRadius = circleDiameter / 2;
             int circleDrawX = node.x - circleRadius;
             int circleDrawY = node.y - circleRadius;
@@ -619,6 +1420,12 @@ public class GUI extends JFrame { // Change MainTreeGUI to GUI and extend JFrame
             int labelX = node.x - fm.stringWidth(label) / 2;
             int labelY = node.y + circleRadius + fm.getAscent() + 5;
             g2d.drawString(label, labelX, labelY);
+
+            if (usageView) {
+                String usageLabel = formatBytes(node.usageBytes);
+                g2d.setColor(Color.DARK_GRAY);
+                g2d.drawString(usageLabel, node.x - fm.stringWidth(usageLabel) / 2, labelY + fm.getHeight());
+            }
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Headless regression check for the link policies. Builds a small tree with a
+ * directory link that sorts after its target (tree/a/b/c/target.txt and
+ * tree/link -> tree/a/b), builds the node map the way the GUI does and runs every
+ * engine under every policy. Breadth-first engines reach the link before the real
+ * directory; they must still find the target, exactly once. Exits with status 1
+ * if any combination misses it.
+ *
+ * Usage: java LinkPolicyCheck
+ */
+public class LinkPolicyCheck {
+
+    public static void main(String[] args) throws Exception {
+        BFS.delayMillis = 0;
+        DFS.delayMillis = 0;
+        AutoSearch.delayMillis = 0;
+
+        Path tree = Files.createTempDirectory("crawler-link-check");
+        List<String> failures = new ArrayList<>();
+        try {
+            Path target = tree.resolve("a/b/c/target.txt");
+            Files.createDirectories(target.getParent());
+            Files.write(target, "x".getBytes());
+            Files.createSymbolicLink(tree.resolve("link"), tree.resolve("a/b"));
+            String expected = target.toFile().getAbsolutePath();
+
+            for (TraversalGuard.LinkPolicy policy : TraversalGuard.LinkPolicy.values()) {
+                for (String engine : new String[] { "bfs", "dfs", "auto" }) {
+                    Set<String> found = crawl(tree.toFile(), policy, engine);
+                    boolean ok = found.size() == 1 && found.contains(expected);
+                    System.out.println(policy.name() + " " + engine + ": found=" + found + (ok ? "" : "  FAILED"));
+                    if (!ok) {
+                        failures.add(policy.name() + " " + engine);
+                    }
+                }
+            }
+        } catch (UnsupportedOperationException | IOException e) {
+            System.err.println("Cannot create the test tree: " + e);
+            System.exit(2);
+        } finally {
+            try (Stream<Path> paths = Files.walk(tree)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            System.err.println("Link policy check failed for: " + String.join(", ", failures));
+            System.exit(1);
+        }
+        System.out.println("Link policy check passed.");
+    }
+
+    // One search for target.txt with the tree built like the GUI builds it
+    private static Set<String> crawl(File root, TraversalGuard.LinkPolicy policy, String engine) throws Exception {
+        DirectoryCache.shared().clear();
+        Map<String, TreeNodeData> nodeMap = new ConcurrentHashMap<>();
+        Set<String> visitedPaths = ConcurrentHashMap.newKeySet();
+        List<String> traversalOrder = Collections.synchronizedList(new ArrayList<>());
+        Set<String> foundFiles = ConcurrentHashMap.newKeySet();
+        PatternSet patterns = PatternSet.compile("target.txt");
+
+        TraversalGuard guard = new TraversalGuard(policy);
+        guard.enterRoot(root);
+        TreeNodeData rootNode = new TreeNodeData(root.getAbsoluteFile(), 0, 0);
+        nodeMap.put(rootNode.file.getAbsolutePath(), rootNode);
+        GUI.buildTree(nodeMap, rootNode, rootNode.file, 1, guard, false);
+
+        long start = System.currentTimeMillis();
+        switch (engine) {
+            case "bfs":
+                BFS.search(rootNode.file.getAbsolutePath(), patterns, true, nodeMap, visitedPaths, traversalOrder, foundFiles, status -> { }, start);
+                break;
+            case "dfs":
+                DFS.search(rootNode.file, patterns, true, nodeMap, visitedPaths, traversalOrder, foundFiles, status -> { }, start);
+                break;
+            default:
+                AutoSearch.Decision decision = AutoSearch.choose(AutoSearch.sample(rootNode.file), true, nodeMap.size());
+                AutoSearch.search(rootNode.file, patterns, true, nodeMap, visitedPaths, traversalOrder, foundFiles, status -> { }, start, decision);
+        }
+        return foundFiles;
+    }
+}
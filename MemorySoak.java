@@ -0,0 +1,365 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Headless memory and GC soak harness for the crawl engines. Generates a large
+ * directory tree once, then crawls it repeatedly with BFS and DFS using the same
+ * structures as the GUI: a full nodeMap, the visited set, the off-heap result set
+ * and traversal order. Each run records the heap retained after GC per 1M nodes,
+ * the bytes allocated per node and per second, the GC pause time and the peak
+ * RSS during that run. The medians are compared with a stored baseline and the process exits
+ * with status 1 if a metric regressed past its tolerance.
+ *
+ * Usage: java MemorySoak [--nodes N] [--fanout F] [--files-per-dir K] [--runs R]
+ *        [--tree DIR] [--baseline FILE] [--tolerance PERCENT] [--update-baseline]
+ */
+public class MemorySoak {
+    private static final String TREE_MARKER = ".soak-tree";
+
+    /** Measured per run and engine; only the compared ones can fail the soak. */
+    private enum Metric {
+        HEAP_PER_1M_NODES("heapPer1MNodes", "bytes", true, 1.0, 0),
+        ALLOCATED_PER_NODE("allocatedPerNode", "bytes", true, 1.0, 0),
+        ALLOCATION_RATE("allocationRate", "bytes/s", false, 1.0, 0),   // Depends on the machine, reported only
+        GC_PAUSE("gcPauseMillis", "ms", true, 5.0, 50),                 // Noisy: wider tolerance plus absolute slack
+        PEAK_RSS("peakRss", "bytes", true, 1.0, 0);
+
+        final String key;
+        final String unit;
+        final boolean compared;
+        final double toleranceScale;
+        final double slack;
+
+        Metric(String key, String unit, boolean compared, double toleranceScale, double slack) {
+            this.key = key;
+            this.unit = unit;
+            this.compared = compared;
+            this.toleranceScale = toleranceScale;
+            this.slack = slack;
+        }
+    }
+
+    /**
+     * Peak resident set of one run. VmHWM is the peak of the whole process, so it
+     * is reset through /proc/self/clear_refs when the kernel allows it; VmRSS is
+     * sampled in the background as well, which covers kernels that do not.
+     */
+    private static class RssPeak {
+        private static final long SAMPLE_INTERVAL_MS = 5;
+
+        private final Thread sampler;
+        private final boolean hwmReset;
+        private volatile boolean running = true;
+        private volatile long sampled;
+
+        RssPeak() {
+            hwmReset = resetHighWaterMark();
+            sampled = procStatus("VmRSS:");
+            sampler = new Thread(() -> {
+                while (running) {
+                    sampled = Math.max(sampled, procStatus("VmRSS:"));
+                    try {
+                        Thread.sleep(SAMPLE_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "soak-rss-sampler");
+            sampler.setDaemon(true);
+            sampler.start();
+        }
+
+        // Peak since construction, -1 if the platform has no /proc
+        long stop() throws InterruptedException {
+            running = false;
+            sampler.interrupt();
+            sampler.join();
+            long peak = Math.max(sampled, procStatus("VmRSS:"));
+            return hwmReset ? Math.max(peak, procStatus("VmHWM:")) : peak;
+        }
+
+        // Writing 5 to clear_refs sets VmHWM back to the current RSS (Linux 4.0+)
+        private static boolean resetHighWaterMark() {
+            try {
+                Files.write(Paths.get("/proc/self/clear_refs"), "5".getBytes());
+                return true;
+            } catch (IOException | SecurityException e) {
+                return false;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int nodes = 200_000;
+        int fanout = 8;
+        int filesPerDir = 20;
+        int runs = 5;
+        File tree = null;
+        File baselineFile = new File("soak-baseline.properties");
+        double tolerance = 10;
+        boolean updateBaseline = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--nodes": nodes = Integer.parseInt(args[++i]); break;
+                case "--fanout": fanout = Integer.parseInt(args[++i]); break;
+                case "--files-per-dir": filesPerDir = Integer.parseInt(args[++i]); break;
+                case "--runs": runs = Integer.parseInt(args[++i]); break;
+                case "--tree": tree = new File(args[++i]); break;
+                case "--baseline": baselineFile = new File(args[++i]); break;
+                case "--tolerance": tolerance = Double.parseDouble(args[++i]); break;
+                case "--update-baseline": updateBaseline = true; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (tree == null) {
+            tree = new File(System.getProperty("java.io.tmpdir"), "crawler-soak-" + nodes + "-" + fanout + "-" + filesPerDir);
+        }
+
+        String treeId = nodes + "/" + fanout + "/" + filesPerDir;
+        generateTree(tree, nodes, fanout, filesPerDir, treeId);
+
+        // Full speed: the visualisation delay would dominate everything else
+        BFS.delayMillis = 0;
+        DFS.delayMillis = 0;
+
+        // Run 0 warms up the JIT and the allocator and is not counted
+        Map<String, List<Double>> samples = new LinkedHashMap<>();
+        for (int run = 0; run <= runs; run++) {
+            for (String engine : new String[] { "bfs", "dfs" }) {
+                Map<Metric, Double> result = crawlOnce(tree, engine.equals("bfs"));
+                StringBuilder line = new StringBuilder(run == 0 ? "warm-up" : "run " + run).append(' ').append(engine).append(':');
+                for (Map.Entry<Metric, Double> entry : result.entrySet()) {
+                    line.append(' ').append(entry.getKey().key).append('=').append(format(entry.getValue()));
+                    if (run > 0) {
+                        samples.computeIfAbsent(engine + "." + entry.getKey().key, k -> new ArrayList<>()).add(entry.getValue());
+                    }
+                }
+                System.out.println(line);
+            }
+        }
+
+        Properties current = new Properties();
+        current.setProperty("tree", treeId);
+        for (Map.Entry<String, List<Double>> entry : samples.entrySet()) {
+            current.setProperty(entry.getKey(), format(median(entry.getValue())));
+        }
+
+        if (updateBaseline || !baselineFile.exists()) {
+            try (OutputStream out = new FileOutputStream(baselineFile)) {
+                current.store(out, "Crawler memory soak baseline (medians of " + runs + " runs)");
+            }
+            System.out.println("Baseline written to " + baselineFile.getAbsolutePath());
+            return;
+        }
+
+        Properties baseline = new Properties();
+        try (InputStream in = new FileInputStream(baselineFile)) {
+            baseline.load(in);
+        }
+        if (!treeId.equals(baseline.getProperty("tree"))) {
+            System.err.println("Baseline " + baselineFile + " was recorded for tree " + baseline.getProperty("tree")
+                    + ", not " + treeId + "; rerun with the same options or --update-baseline");
+            System.exit(2);
+        }
+
+        List<String> regressions = new ArrayList<>();
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-26s %16s %16s %9s", "metric", "baseline", "current", "change"));
+        for (String engine : new String[] { "bfs", "dfs" }) {
+            for (Metric metric : Metric.values()) {
+                String key = engine + "." + metric.key;
+                if (current.getProperty(key) == null || baseline.getProperty(key) == null) continue;
+                double before = Double.parseDouble(baseline.getProperty(key));
+                double now = Double.parseDouble(current.getProperty(key));
+                if (before < 0 || now < 0) continue; // Not measurable on this platform
+
+                double change = before == 0 ? 0 : (now - before) / before * 100;
+                double limit = before * (1 + tolerance * metric.toleranceScale / 100) + metric.slack;
+                boolean regressed = metric.compared && now > limit;
+                System.out.println(String.format(Locale.ROOT, "%-26s %16s %16s %+8.1f%%%s", key, format(before), format(now), change,
+                        regressed ? "  REGRESSION" : metric.compared ? "" : "  (informational)"));
+                if (regressed) {
+                    regressions.add(key + " " + format(before) + " -> " + format(now) + " " + metric.unit);
+                }
+            }
+        }
+
+        if (!regressions.isEmpty()) {
+            System.err.println("Memory soak failed, " + regressions.size() + " metric(s) regressed past the baseline:");
+            for (String regression : regressions) {
+                System.err.println("  " + regression);
+            }
+            System.exit(1);
+        }
+        System.out.println("Memory soak passed.");
+    }
+
+    // One crawl over the whole tree with fresh structures, measured from the outside
+    private static Map<Metric, Double> crawlOnce(File tree, boolean bfs) throws Exception {
+        DirectoryCache.shared().clear();
+        long heapBefore = usedHeapAfterGc();
+        RssPeak rssPeak = new RssPeak();
+        long gcBefore = gcMillis();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+
+        Map<String, TreeNodeData> nodeMap = new ConcurrentHashMap<>();
+        OffHeapResultSet visitedPaths = new OffHeapResultSet(OffHeapStore.DEFAULT_BUDGET);
+        OffHeapResultSet foundFiles = new OffHeapResultSet(OffHeapStore.DEFAULT_BUDGET);
+        OffHeapList traversalOrder = new OffHeapList(OffHeapStore.DEFAULT_BUDGET);
+        PatternSet patterns = PatternSet.compile("*.log");
+
+        buildNodeMap(tree, nodeMap);
+        if (bfs) {
+            BFS.search(tree.getAbsolutePath(), patterns, true, nodeMap, visitedPaths, traversalOrder, foundFiles, status -> { }, start);
+        } else {
+            DFS.search(tree.getAbsoluteFile(), patterns, true, nodeMap, visitedPaths, traversalOrder, foundFiles, status -> { }, start);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long peakRss = rssPeak.stop();
+        long allocated = allocatedBytes() - allocatedBefore;
+        long gcPause = gcMillis() - gcBefore;
+        long retained = usedHeapAfterGc() - heapBefore; // Everything above is still reachable here
+        int count = nodeMap.size();
+
+        Map<Metric, Double> result = new LinkedHashMap<>();
+        result.put(Metric.HEAP_PER_1M_NODES, (double) retained / count * 1_000_000);
+        result.put(Metric.ALLOCATED_PER_NODE, allocated < 0 ? -1 : (double) allocated / count);
+        result.put(Metric.ALLOCATION_RATE, allocated < 0 ? -1 : allocated / seconds);
+        result.put(Metric.GC_PAUSE, (double) gcPause);
+        result.put(Metric.PEAK_RSS, (double) peakRss);
+
+        // Keep the structures reachable until the measurement is done
+        if (visitedPaths.size() != traversalOrder.size() || foundFiles.isEmpty()) {
+            throw new IllegalStateException("Crawl incomplete: " + visitedPaths.size() + " visited, "
+                    + traversalOrder.size() + " in order, " + foundFiles.size() + " matches");
+        }
+        visitedPaths.close();
+        foundFiles.close();
+        traversalOrder.getStore().close();
+        return result;
+    }
+
+    // Same node layout as the GUI tree, but without its depth and child limits
+    private static void buildNodeMap(File root, Map<String, TreeNodeData> nodeMap) {
+        TreeNodeData rootNode = new TreeNodeData(root.getAbsoluteFile(), 0, 0);
+        nodeMap.put(rootNode.file.getAbsolutePath(), rootNode);
+        Deque<TreeNodeData> pending = new ArrayDeque<>();
+        pending.push(rootNode);
+        while (!pending.isEmpty()) {
+            TreeNodeData parent = pending.pop();
+            DirectoryCache.Listing listing = DirectoryCache.shared().list(parent.file);
+            if (listing == null) continue;
+            for (int i = 0; i < listing.files.length; i++) {
+                TreeNodeData child = new TreeNodeData(listing.files[i], parent.level + 1, i);
+                parent.addChild(child);
+                nodeMap.put(child.file.getAbsolutePath(), child);
+                if (listing.directories[i]) {
+                    child.entered = true; // The generated tree has no links
+                    pending.push(child);
+                }
+            }
+        }
+    }
+
+    // Breadth-first: every directory gets its files and subdirectories until the node count is reached
+    private static void generateTree(File root, int nodes, int fanout, int filesPerDir, String treeId) throws IOException {
+        File marker = new File(root, TREE_MARKER);
+        if (marker.isFile() && treeId.equals(new String(Files.readAllBytes(marker.toPath())).trim())) {
+            System.out.println("Reusing tree " + root);
+            return;
+        }
+        System.out.println("Generating " + nodes + " nodes in " + root + "...");
+        root.mkdirs();
+        Deque<File> queue = new ArrayDeque<>();
+        queue.add(root);
+        int created = 1;
+        while (created < nodes && !queue.isEmpty()) {
+            File dir = queue.poll();
+            for (int f = 0; f < filesPerDir && created < nodes; f++, created++) {
+                File file = new File(dir, "file" + f + (f % 10 == 0 ? ".log" : ".txt"));
+                if (!file.exists()) {
+                    file.createNewFile();
+                }
+            }
+            for (int d = 0; d < fanout && created < nodes; d++, created++) {
+                File sub = new File(dir, "dir" + d);
+                sub.mkdir();
+                queue.add(sub);
+            }
+        }
+        Files.write(marker.toPath(), treeId.getBytes());
+    }
+
+    private static long usedHeapAfterGc() {
+        // Several rounds: finalizers and reference processing can free more on the next one
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    // Bytes allocated by this thread, -1 if the JVM cannot tell
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    // A size field of /proc/self/status in bytes (Linux), -1 elsewhere
+    private static long procStatus(String field) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith(field)) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not Linux or not readable
+        }
+        return -1;
+    }
+
+    private static double median(List<Double> values) {
+        double[] sorted = values.stream().mapToDouble(Double::doubleValue).toArray();
+        Arrays.sort(sorted);
+        int mid = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2;
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.format(Locale.ROOT, "%.1f", value);
+    }
+}
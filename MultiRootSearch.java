@@ -0,0 +1,193 @@
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs one search per root directory on a shared thread pool with a global
+ * result and time budget. Every root gets its own view of the shared result set
+ * that tags each match with its root, so the first match anywhere is visible to
+ * all engines and a slow root never blocks the others. Cancelled roots are
+ * interrupted and waited for, so none of them writes into the shared structures
+ * after search() returns.
+ */
+public class MultiRootSearch {
+    private static final long STOP_WAIT_MILLIS = 5000; // A root blocked in I/O longer than this is left behind
+
+    // Work done for a single root (build its tree, run BFS/DFS, ...)
+    @FunctionalInterface
+    public interface RootSearch {
+        void run(String root, Set<String> foundFiles) throws Exception;
+    }
+
+    public static class Result {
+        public final Map<String, String> matchRoots;  // Match path -> root it was found under
+        public final Map<String, String> rootStatus;  // Root -> completed / cancelled / timed out / failed
+        public final boolean timedOut;
+        public final boolean budgetReached;
+
+        Result(Map<String, String> matchRoots, Map<String, String> rootStatus, boolean timedOut, boolean budgetReached) {
+            this.matchRoots = matchRoots;
+            this.rootStatus = rootStatus;
+            this.timedOut = timedOut;
+            this.budgetReached = budgetReached;
+        }
+    }
+
+    public static Result search(
+            List<String> roots,                          // root directories, crawled concurrently
+            boolean findAll,                             // false: the first match across all roots stops the rest
+            int maxResults,                              // global result budget, 0 = unlimited
+            long timeBudgetMillis,                       // global time budget, 0 = unlimited
+            int threads,                                 // size of the shared pool
+            Set<String> foundFiles,                      // shared result set (must be thread-safe)
+            BiConsumer<String, String> onMatch,          // streamed (root, path) for every accepted match
+            RootSearch rootSearch
+    ) throws InterruptedException {
+        Map<String, String> matchRoots = new ConcurrentHashMap<>();
+        Map<String, String> rootStatus = Collections.synchronizedMap(new LinkedHashMap<>());
+        for (String root : roots) {
+            rootStatus.put(root, "running");
+        }
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicInteger remaining = new AtomicInteger(roots.size());
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicBoolean budgetReached = new AtomicBoolean();
+        AtomicBoolean closed = new AtomicBoolean(); // Set on return: late matches are dropped
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, roots.size())));
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        try {
+            for (String root : roots) {
+                RootTaggedSet tagged = new RootTaggedSet(root, foundFiles, matchRoots, onMatch, () -> {
+                    if (!findAll || (maxResults > 0 && accepted.get() >= maxResults)) {
+                        budgetReached.set(findAll);
+                        finished.countDown(); // First match (or full budget) cancels the other roots
+                    }
+                }, accepted, maxResults, closed);
+
+                futures.put(root, pool.submit(() -> {
+                    try {
+                        rootSearch.run(root, tagged);
+                        rootStatus.put(root, "completed");
+                    } catch (InterruptedException e) {
+                        rootStatus.replace(root, "running", "cancelled"); // Keep the reason set by the canceller
+                    } catch (Exception e) {
+                        rootStatus.put(root, "failed: " + e.getMessage());
+                    } finally {
+                        if (remaining.decrementAndGet() == 0) {
+                            finished.countDown();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            boolean timedOut = false;
+            if (timeBudgetMillis > 0) {
+                timedOut = !finished.await(timeBudgetMillis, TimeUnit.MILLISECONDS);
+            } else {
+                finished.await();
+            }
+
+            // Stop whatever is still running; the engines check the interrupt on every node
+            for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+                if (!entry.getValue().isDone()) {
+                    String status = timedOut ? "timed out" : "cancelled";
+                    if (!timedOut && matchRoots.containsValue(entry.getKey())) {
+                        status = "stopped after match";
+                    }
+                    rootStatus.put(entry.getKey(), status);
+                    entry.getValue().cancel(true);
+                }
+            }
+            pool.shutdownNow();
+            if (!pool.awaitTermination(STOP_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+                    if (entry.getValue().isCancelled()) {
+                        rootStatus.computeIfPresent(entry.getKey(), (root, status) -> status + ", still blocked");
+                    }
+                }
+            }
+            return new Result(matchRoots, rootStatus, timedOut, budgetReached.get());
+        } finally {
+            closed.set(true);
+            pool.shutdownNow();
+        }
+    }
+
+    // View of the shared result set that tags every added path with its root
+    private static class RootTaggedSet extends AbstractSet<String> {
+        private final String root;
+        private final Set<String> shared;
+        private final Map<String, String> matchRoots;
+        private final BiConsumer<String, String> onMatch;
+        private final Runnable onAdded;
+        private final AtomicInteger accepted;
+        private final int maxResults;
+        private final AtomicBoolean closed;
+
+        RootTaggedSet(String root, Set<String> shared, Map<String, String> matchRoots, BiConsumer<String, String> onMatch,
+                      Runnable onAdded, AtomicInteger accepted, int maxResults, AtomicBoolean closed) {
+            this.root = root;
+            this.shared = shared;
+            this.matchRoots = matchRoots;
+            this.onMatch = onMatch;
+            this.onAdded = onAdded;
+            this.accepted = accepted;
+            this.maxResults = maxResults;
+            this.closed = closed;
+        }
+
+        @Override
+        public boolean add(String path) {
+            if (closed.get()) {
+                return false; // A root still blocked after the search returned
+            }
+            int slot = accepted.incrementAndGet();
+            if (maxResults > 0 && slot > maxResults) {
+                return false; // Global budget already used up
+            }
+            if (!shared.add(path)) {
+                accepted.decrementAndGet();
+                return false;
+            }
+            matchRoots.put(path, root);
+            onMatch.accept(root, path);
+            onAdded.run();
+            return true;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return shared.contains(o);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return shared.isEmpty();
+        }
+
+        @Override
+        public int size() {
+            return shared.size();
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return shared.iterator();
+        }
+    }
+}
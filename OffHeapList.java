@@ -0,0 +1,39 @@
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Append-only List view of an OffHeapStore, used for the traversal order.
+ * Elements cannot be replaced or removed one by one, only cleared together.
+ */
+public class OffHeapList extends AbstractList<String> implements RandomAccess {
+    private final OffHeapStore store;
+
+    public OffHeapList(long memoryBudget) {
+        this.store = new OffHeapStore(memoryBudget);
+    }
+
+    public OffHeapStore getStore() {
+        return store;
+    }
+
+    @Override
+    public boolean add(String value) {
+        store.append(value);
+        return true;
+    }
+
+    @Override
+    public String get(int index) {
+        return store.get(index);
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, store.size());
+    }
+
+    @Override
+    public void clear() {
+        store.clear();
+    }
+}
@@ -0,0 +1,174 @@
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Insertion-ordered Set of paths stored in an OffHeapStore, used for the matches
+ * and the visited paths.
+ * Membership is answered by an open-addressing table of (hash, record number)
+ * pairs. The table is split into buffers taken from the store, so it shares the
+ * store's memory budget and spills to its file like the paths; neither sits on
+ * the heap. Slots are addressed with longs, so the table grows past 2^27 slots.
+ */
+public class OffHeapResultSet extends AbstractSet<String> implements Closeable {
+    private static final int SLOT_BYTES = 2 * Long.BYTES; // hash + (record number + 1), 0 marks a free slot
+    private static final int SLOTS_PER_BUFFER = OffHeapStore.SEGMENT_SIZE / SLOT_BYTES;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final OffHeapStore store;
+    private ByteBuffer[] table; // One smaller buffer up to SLOTS_PER_BUFFER slots, then whole segments
+    private long capacity;      // Slots, a power of two
+
+    public OffHeapResultSet(long memoryBudget) {
+        this.store = new OffHeapStore(memoryBudget);
+        table = allocateTable(MIN_CAPACITY);
+    }
+
+    public OffHeapStore getStore() {
+        return store;
+    }
+
+    @Override
+    public synchronized boolean add(String path) {
+        long hash = hash(path);
+        long slot = find(path, hash);
+        if (entryAt(table, slot) != 0) {
+            return false; // Already present
+        }
+        long index = store.append(path);
+        putSlot(table, slot, hash, index + 1);
+        if (store.size() * 2 > capacity) {
+            rehash();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(Object o) {
+        if (!(o instanceof String)) return false;
+        String path = (String) o;
+        return entryAt(table, find(path, hash(path))) != 0;
+    }
+
+    // Record number i in insertion order, for paging through the results
+    public String get(long index) {
+        return store.get(index);
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, store.size());
+    }
+
+    // Empties the set; the path segments are kept for reuse, the table shrinks back to its initial size
+    @Override
+    public synchronized void clear() {
+        store.clear();
+        releaseTable(table);
+        table = allocateTable(MIN_CAPACITY);
+    }
+
+    // Empties the set and gives back its memory and spill file; the set stays usable
+    @Override
+    public synchronized void close() {
+        store.close(); // Drops the table's buffers with the segments
+        table = allocateTable(MIN_CAPACITY);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        long end = store.size(); // Elements added while iterating are not returned
+        return new Iterator<>() {
+            private long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public String next() {
+                if (next >= end) throw new NoSuchElementException();
+                return store.get(next++);
+            }
+        };
+    }
+
+    // Slot holding path, or the free slot where it would go
+    private long find(String path, long hash) {
+        long mask = capacity - 1;
+        long slot = (hash ^ (hash >>> 32)) & mask;
+        while (true) {
+            long entry = entryAt(table, slot);
+            if (entry == 0) return slot;
+            // Only decode the stored path when the full 64-bit hash matches
+            if (hashAt(table, slot) == hash && store.get(entry - 1).equals(path)) return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void rehash() {
+        ByteBuffer[] old = table;
+        long oldCapacity = capacity;
+        table = allocateTable(capacity * 2);
+        long mask = capacity - 1;
+        for (long i = 0; i < oldCapacity; i++) {
+            long entry = entryAt(old, i);
+            if (entry == 0) continue;
+            long hash = hashAt(old, i);
+            long slot = (hash ^ (hash >>> 32)) & mask;
+            while (entryAt(table, slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            putSlot(table, slot, hash, entry);
+        }
+        releaseTable(old);
+    }
+
+    // Zeroed buffers for the given number of slots, charged against the store's budget
+    private ByteBuffer[] allocateTable(long slots) {
+        capacity = slots;
+        int count = (int) Math.max(1, slots / SLOTS_PER_BUFFER);
+        int bytes = (int) Math.min(slots, SLOTS_PER_BUFFER) * SLOT_BYTES;
+        ByteBuffer[] buffers = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            ByteBuffer buffer = store.allocate(bytes);
+            for (int offset = 0; offset < bytes; offset += Long.BYTES) {
+                buffer.putLong(offset, 0); // Segments given back by an earlier table are not clean
+            }
+            buffers[i] = buffer;
+        }
+        return buffers;
+    }
+
+    private void releaseTable(ByteBuffer[] buffers) {
+        for (ByteBuffer buffer : buffers) {
+            store.release(buffer);
+        }
+    }
+
+    private static long hashAt(ByteBuffer[] table, long slot) {
+        return table[(int) (slot / SLOTS_PER_BUFFER)].getLong((int) (slot % SLOTS_PER_BUFFER) * SLOT_BYTES);
+    }
+
+    private static long entryAt(ByteBuffer[] table, long slot) {
+        return table[(int) (slot / SLOTS_PER_BUFFER)].getLong((int) (slot % SLOTS_PER_BUFFER) * SLOT_BYTES + Long.BYTES);
+    }
+
+    private static void putSlot(ByteBuffer[] table, long slot, long hash, long entry) {
+        ByteBuffer buffer = table[(int) (slot / SLOTS_PER_BUFFER)];
+        int offset = (int) (slot % SLOTS_PER_BUFFER) * SLOT_BYTES;
+        buffer.putLong(offset, hash);
+        buffer.putLong(offset + Long.BYTES, entry);
+    }
+
+    private static long hash(String s) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001B3L;
+        }
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append-only store of strings kept outside the Java heap. Records and their
+ * offsets live in fixed-size segments: direct buffers up to the memory budget,
+ * then segments memory-mapped from a temp file. Supports sequential and random
+ * access by record number, so heap use stays flat however many entries are added.
+ * Structures built on a store (the hash table of OffHeapResultSet) take their
+ * buffers from allocate(), so they count against the same budget and spill too.
+ */
+public class OffHeapStore implements Closeable {
+    static final int SEGMENT_SIZE = 1 << 20;                     // 1 MB per segment
+    private static final int OFFSETS_PER_SEGMENT = SEGMENT_SIZE / Long.BYTES;
+
+    // Default in-memory budget per store, override with -Dcrawler.offheap.budgetMb=N
+    public static final long DEFAULT_BUDGET = Long.getLong("crawler.offheap.budgetMb", 64) * 1024 * 1024;
+
+    private final long memoryBudget;
+    private final List<ByteBuffer> dataSegments = new ArrayList<>();
+    private final List<ByteBuffer> offsetSegments = new ArrayList<>();
+    private final List<ByteBuffer> freeSegments = new ArrayList<>(); // Released by release(), handed out again first
+    private final Set<ByteBuffer> mappedBuffers = Collections.newSetFromMap(new IdentityHashMap<>()); // Smaller than a segment
+    private long inMemoryBytes;
+    private long spilledBytes;
+    private RandomAccessFile spillFile;
+    private File spillPath;
+
+    private long size;
+    private int writeSegment;   // Data segment currently written
+    private int writePosition;  // Position inside that segment
+
+    public OffHeapStore(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    // Appends a record and returns its index
+    public synchronized long append(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int needed = Integer.BYTES + bytes.length;
+        if (needed > SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Record too large for off-heap store: " + bytes.length + " bytes");
+        }
+
+        if (writeSegment == dataSegments.size()) {
+            dataSegments.add(newSegment());
+        } else if (SEGMENT_SIZE - writePosition < needed) {
+            // Records never cross a segment boundary
+            writeSegment++;
+            writePosition = 0;
+            if (writeSegment == dataSegments.size()) {
+                dataSegments.add(newSegment());
+            }
+        }
+
+        ByteBuffer segment = dataSegments.get(writeSegment);
+        segment.putInt(writePosition, bytes.length);
+        segment.put(writePosition + Integer.BYTES, bytes);
+        long offset = (long) writeSegment * SEGMENT_SIZE + writePosition;
+        writePosition += needed;
+
+        int offsetSegment = (int) (size / OFFSETS_PER_SEGMENT);
+        if (offsetSegment == offsetSegments.size()) {
+            offsetSegments.add(newSegment());
+        }
+        offsetSegments.get(offsetSegment).putLong((int) (size % OFFSETS_PER_SEGMENT) * Long.BYTES, offset);
+        return size++;
+    }
+
+    public synchronized String get(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        long offset = offsetSegments.get((int) (index / OFFSETS_PER_SEGMENT))
+                .getLong((int) (index % OFFSETS_PER_SEGMENT) * Long.BYTES);
+        ByteBuffer segment = dataSegments.get((int) (offset / SEGMENT_SIZE));
+        int position = (int) (offset % SEGMENT_SIZE);
+        byte[] bytes = new byte[segment.getInt(position)];
+        segment.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    // Forgets all records; segments are kept and reused
+    public synchronized void clear() {
+        size = 0;
+        writeSegment = 0;
+        writePosition = 0;
+    }
+
+    public synchronized long inMemoryBytes() {
+        return inMemoryBytes;
+    }
+
+    public synchronized long spilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * A buffer of the given size, charged against the budget like the segments:
+     * direct while within it, else mapped from the spill file. A full segment may
+     * be one given back with release(), so callers must not expect it zeroed.
+     */
+    synchronized ByteBuffer allocate(int bytes) {
+        if (bytes == SEGMENT_SIZE && !freeSegments.isEmpty()) {
+            return freeSegments.remove(freeSegments.size() - 1);
+        }
+        if (inMemoryBytes + bytes <= memoryBudget) {
+            inMemoryBytes += bytes;
+            return ByteBuffer.allocateDirect(bytes);
+        }
+        try {
+            if (spillFile == null) {
+                spillPath = File.createTempFile("crawler-offheap-", ".bin");
+                spillPath.deleteOnExit();
+                spillFile = new RandomAccessFile(spillPath, "rw");
+            }
+            ByteBuffer buffer = spillFile.getChannel().map(FileChannel.MapMode.READ_WRITE, spilledBytes, bytes);
+            spilledBytes += bytes;
+            if (bytes != SEGMENT_SIZE) {
+                mappedBuffers.add(buffer);
+            }
+            return buffer;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot spill off-heap store to disk", e);
+        }
+    }
+
+    // Gives back a buffer from allocate(): full segments are reused, a smaller direct one stops counting against the budget
+    synchronized void release(ByteBuffer buffer) {
+        if (buffer.capacity() == SEGMENT_SIZE) {
+            freeSegments.add(buffer);
+        } else if (!mappedBuffers.remove(buffer)) {
+            inMemoryBytes -= buffer.capacity();
+        }
+        // A smaller mapped region keeps its place in the spill file until close()
+    }
+
+    @Override
+    public synchronized void close() {
+        dataSegments.clear();
+        offsetSegments.clear();
+        freeSegments.clear();
+        mappedBuffers.clear();
+        clear();
+        inMemoryBytes = 0;
+        spilledBytes = 0;
+        if (spillFile != null) {
+            try {
+                spillFile.close();
+            } catch (IOException e) {
+                // Nothing useful to do, the file is deleted below
+            }
+            spillPath.delete();
+            spillFile = null;
+        }
+    }
+
+    private ByteBuffer newSegment() {
+        return allocate(SEGMENT_SIZE);
+    }
+}
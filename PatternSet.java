@@ -0,0 +1,309 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A batch of file name patterns (exact names and '*' globs, case-insensitive)
+ * compiled into one matcher, so a single traversal answers all of them.
+ * Exact names and "prefix*" patterns share a prefix trie, "*suffix" patterns
+ * (for example "*.pem") a reversed suffix trie, and the remaining globs run
+ * together in one bit-parallel automaton. Matching does not allocate.
+ */
+public class PatternSet implements FileMatcher {
+    private final String[] patterns;
+    private final AtomicLongArray hits;  // Matches per pattern during the current search
+    private final boolean[] matchAll;    // Pattern is just "*"
+    private final boolean hasMatchAll;
+    private final TrieNode prefixTrie = new TrieNode();
+    private final TrieNode suffixTrie = new TrieNode();
+    private final GlobAutomaton globs;
+
+    private PatternSet(List<String> patternList) {
+        patterns = patternList.toArray(new String[0]);
+        hits = new AtomicLongArray(patterns.length);
+        matchAll = new boolean[patterns.length];
+
+        List<String> generalGlobs = new ArrayList<>();
+        List<Integer> generalIds = new ArrayList<>();
+        boolean anyMatchAll = false;
+        for (int id = 0; id < patterns.length; id++) {
+            String pattern = fold(patterns[id]);
+            int firstStar = pattern.indexOf('*');
+            int lastStar = pattern.lastIndexOf('*');
+            if (firstStar < 0) {
+                TrieNode node = prefixTrie.insert(pattern, false);
+                node.exactIds = append(node.exactIds, id);
+            } else if (pattern.chars().allMatch(c -> c == '*')) {
+                matchAll[id] = true;
+                anyMatchAll = true;
+            } else if (firstStar == lastStar && firstStar == pattern.length() - 1) {
+                TrieNode node = prefixTrie.insert(pattern.substring(0, firstStar), false);
+                node.wildcardIds = append(node.wildcardIds, id);
+            } else if (firstStar == lastStar && firstStar == 0) {
+                TrieNode node = suffixTrie.insert(pattern.substring(1), true);
+                node.wildcardIds = append(node.wildcardIds, id);
+            } else {
+                generalGlobs.add(pattern);
+                generalIds.add(id);
+            }
+        }
+        hasMatchAll = anyMatchAll;
+        globs = generalGlobs.isEmpty() ? null : new GlobAutomaton(generalGlobs, generalIds);
+    }
+
+    // Compiles a query of one or more patterns separated by ',' or ';'
+    public static PatternSet compile(String query) {
+        List<String> list = new ArrayList<>();
+        for (String part : query.split("[,;]")) {
+            String pattern = part.trim();
+            if (!pattern.isEmpty() && !list.contains(pattern)) {
+                list.add(pattern);
+            }
+        }
+        return new PatternSet(list);
+    }
+
+    // Lowercases per character, exactly as names are folded while matching, whatever the default locale
+    public static String fold(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    public int size() {
+        return patterns.length;
+    }
+
+    public String pattern(int id) {
+        return patterns[id];
+    }
+
+    public long hits(int id) {
+        return hits.get(id);
+    }
+
+    // True if any pattern matches; counts a hit for every matching pattern
+    public boolean matches(String fileName) {
+        return scan(fileName, null);
+    }
+
+    @Override
+    public boolean accept(String path, String fileName) {
+        return matches(fileName);
+    }
+
+    // Patterns matching fileName, for tagging results (allocates, not for the crawl loop)
+    public List<String> matchingPatterns(String fileName) {
+        List<String> result = new ArrayList<>();
+        scan(fileName, result);
+        return result;
+    }
+
+    private boolean scan(String name, List<String> tags) {
+        boolean matched = false;
+        if (hasMatchAll) {
+            for (int id = 0; id < matchAll.length; id++) {
+                if (matchAll[id]) matched |= emit(id, tags);
+            }
+        }
+
+        // Prefix trie: "prefix*" fires on the way down, exact names only at the end of the name
+        TrieNode node = prefixTrie;
+        int length = name.length();
+        for (int i = 0; node != null; i++) {
+            if (node.wildcardIds != null) matched |= emitAll(node.wildcardIds, tags);
+            if (i == length) {
+                if (node.exactIds != null) matched |= emitAll(node.exactIds, tags);
+                break;
+            }
+            node = node.child(Character.toLowerCase(name.charAt(i)));
+        }
+
+        // Suffix trie is keyed by reversed suffixes, so walk the name backwards
+        node = suffixTrie;
+        for (int i = length - 1; node != null; i--) {
+            if (node.wildcardIds != null) matched |= emitAll(node.wildcardIds, tags);
+            if (i < 0) break;
+            node = node.child(Character.toLowerCase(name.charAt(i)));
+        }
+
+        if (globs != null) {
+            matched |= globs.run(name, this, tags);
+        }
+        return matched;
+    }
+
+    private boolean emitAll(int[] ids, List<String> tags) {
+        for (int id : ids) emit(id, tags);
+        return true;
+    }
+
+    private boolean emit(int id, List<String> tags) {
+        if (tags == null) {
+            hits.incrementAndGet(id);
+        } else {
+            tags.add(patterns[id]);
+        }
+        return true;
+    }
+
+    private static int[] append(int[] ids, int id) {
+        if (ids == null) return new int[] { id };
+        int[] result = Arrays.copyOf(ids, ids.length + 1);
+        result[ids.length] = id;
+        return result;
+    }
+
+    private static class TrieNode {
+        char[] keys = new char[0];
+        TrieNode[] next = new TrieNode[0];
+        int[] wildcardIds; // Patterns whose remaining part is '*'
+        int[] exactIds;    // Exact names ending at this node (prefix trie only)
+
+        TrieNode child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) return next[i];
+            }
+            return null;
+        }
+
+        TrieNode insert(String key, boolean reversed) {
+            TrieNode node = this;
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(reversed ? key.length() - 1 - i : i);
+                TrieNode child = node.child(c);
+                if (child == null) {
+                    child = new TrieNode();
+                    node.keys = Arrays.copyOf(node.keys, node.keys.length + 1);
+                    node.next = Arrays.copyOf(node.next, node.next.length + 1);
+                    node.keys[node.keys.length - 1] = c;
+                    node.next[node.next.length - 1] = child;
+                }
+                node = child;
+            }
+            return node;
+        }
+    }
+
+    /**
+     * All general globs as one NFA simulated with bit sets (shift-and). Glob g uses
+     * one bit per pattern character plus an accept bit; '*' bits keep their state
+     * on every character and also enable the next position without consuming one.
+     */
+    private static class GlobAutomaton {
+        private final char[] chars;          // Lowercased pattern characters, '\0' at accept positions
+        private final int[] acceptIds;       // Pattern id per position, -1 if not an accept position
+        private final long[] startMask;
+        private final long[] starMask;
+        private final long[] acceptMask;
+        private final long[][] asciiMasks;   // Positions matching each ASCII character
+        private final int words;
+        private final ThreadLocal<long[][]> scratch;
+
+        GlobAutomaton(List<String> globs, List<Integer> ids) {
+            int positions = 0;
+            for (String glob : globs) positions += glob.length() + 1;
+            words = (positions + 63) / 64;
+            chars = new char[positions];
+            acceptIds = new int[positions];
+            startMask = new long[words];
+            starMask = new long[words];
+            acceptMask = new long[words];
+            asciiMasks = new long[128][words];
+
+            int p = 0;
+            for (int g = 0; g < globs.size(); g++) {
+                String glob = globs.get(g);
+                set(startMask, p);
+                for (int i = 0; i < glob.length(); i++, p++) {
+                    char c = glob.charAt(i);
+                    chars[p] = c;
+                    acceptIds[p] = -1;
+                    if (c == '*') set(starMask, p);
+                    else if (c < 128) set(asciiMasks[c], p);
+                }
+                chars[p] = '\0';
+                acceptIds[p] = ids.get(g);
+                set(acceptMask, p);
+                p++;
+            }
+            scratch = ThreadLocal.withInitial(() -> new long[3][words]);
+        }
+
+        boolean run(String name, PatternSet owner, List<String> tags) {
+            long[][] buffers = scratch.get();
+            long[] current = buffers[0];
+            long[] next = buffers[1];
+            long[] charMask = buffers[2];
+
+            System.arraycopy(startMask, 0, current, 0, words);
+            closeOverStars(current);
+
+            for (int i = 0; i < name.length(); i++) {
+                char c = Character.toLowerCase(name.charAt(i));
+                long[] mask = c < 128 ? asciiMasks[c] : nonAsciiMask(c, charMask);
+
+                // next = ((current & mask) << 1) | (current & star), never shifting into a start position
+                long carry = 0;
+                long any = 0;
+                for (int w = 0; w < words; w++) {
+                    long moved = current[w] & mask[w];
+                    long shifted = (moved << 1) | carry;
+                    carry = moved >>> 63;
+                    next[w] = (shifted & ~startMask[w]) | (current[w] & starMask[w]);
+                    any |= next[w];
+                }
+                if (any == 0) return false; // No glob can match anymore
+                closeOverStars(next);
+
+                long[] swap = current;
+                current = next;
+                next = swap;
+            }
+
+            boolean matched = false;
+            for (int w = 0; w < words; w++) {
+                long accepted = current[w] & acceptMask[w];
+                while (accepted != 0) {
+                    int bit = Long.numberOfTrailingZeros(accepted);
+                    accepted &= accepted - 1;
+                    matched |= owner.emit(acceptIds[w * 64 + bit], tags);
+                }
+            }
+            return matched;
+        }
+
+        // A '*' may match nothing: an active star also activates the following position
+        private void closeOverStars(long[] state) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                long carry = 0;
+                for (int w = 0; w < words; w++) {
+                    long stars = state[w] & starMask[w];
+                    long shifted = ((stars << 1) | carry) & ~startMask[w];
+                    carry = stars >>> 63;
+                    if ((shifted & ~state[w]) != 0) {
+                        state[w] |= shifted;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        private long[] nonAsciiMask(char c, long[] mask) {
+            Arrays.fill(mask, 0);
+            for (int p = 0; p < chars.length; p++) {
+                if (chars[p] == c) set(mask, p);
+            }
+            return mask;
+        }
+
+        private static void set(long[] bits, int p) {
+            bits[p >>> 6] |= 1L << (p & 63);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache of finished search results keyed by roots, patterns and filters. An entry
+ * records the mtime of every directory on the paths from the roots to its matches
+ * and is served only while none of them changed. Least recently used entries are
+ * evicted once the total number of cached paths exceeds the limit, optionally
+ * spilling them to disk so they can still be served later.
+ */
+public class ResultCache {
+    private static final int FORMAT_VERSION = 1;
+    private static final long DEFAULT_MAX_PATHS = 1_000_000;
+
+    private static final ResultCache SHARED = new ResultCache(DEFAULT_MAX_PATHS,
+            Boolean.parseBoolean(System.getProperty("crawler.resultcache.spill", "true"))
+                    ? new File(System.getProperty("user.home"), ".folder-crawler" + File.separator + "result-cache")
+                    : null);
+
+    private static class Entry {
+        final String key;
+        final String[] matches;
+        final String[] directories;   // Directories between the roots and the matches (roots included)
+        final long[] directoryMtimes;
+        final long createdAt;
+
+        Entry(String key, String[] matches, String[] directories, long[] directoryMtimes, long createdAt) {
+            this.key = key;
+            this.matches = matches;
+            this.directories = directories;
+            this.directoryMtimes = directoryMtimes;
+            this.createdAt = createdAt;
+        }
+
+        long weight() {
+            return matches.length + directories.length;
+        }
+    }
+
+    public static class Hit {
+        public final List<String> matches;
+        public final long ageMillis;
+        public final int directoriesValidated;
+        public final boolean fromDisk;
+
+        Hit(List<String> matches, long ageMillis, int directoriesValidated, boolean fromDisk) {
+            this.matches = matches;
+            this.ageMillis = ageMillis;
+            this.directoriesValidated = directoriesValidated;
+            this.fromDisk = fromDisk;
+        }
+    }
+
+    private final long maxPaths;
+    private final File spillDir; // null: evicted entries are dropped
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedPaths;
+    private long hits, misses, stale;
+
+    public ResultCache(long maxPaths, File spillDir) {
+        this.maxPaths = maxPaths;
+        this.spillDir = spillDir;
+    }
+
+    public static ResultCache shared() {
+        return SHARED;
+    }
+
+    public static String key(List<String> roots, String query, boolean findAll, String algorithm, String linkPolicy) {
+        List<String> absoluteRoots = new ArrayList<>();
+        for (String root : roots) {
+            absoluteRoots.add(new File(root).getAbsolutePath());
+        }
+        // The first match depends on the traversal order, the full result set does not
+        return absoluteRoots + "|" + query + "|" + (findAll ? "all" : "first:" + algorithm) + "|" + linkPolicy;
+    }
+
+    // Returns the cached result if every recorded directory is unchanged, otherwise null
+    public Hit lookup(String key) {
+        Entry entry;
+        boolean fromDisk = false;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null && spillDir != null) {
+            entry = readSpilled(key);
+            fromDisk = entry != null;
+        }
+        if (entry == null) {
+            synchronized (this) {
+                misses++;
+            }
+            return null;
+        }
+
+        for (int i = 0; i < entry.directories.length; i++) {
+            if (new File(entry.directories[i]).lastModified() != entry.directoryMtimes[i]) {
+                invalidate(key);
+                synchronized (this) {
+                    stale++;
+                    misses++;
+                }
+                return null;
+            }
+        }
+
+        List<Entry> evicted = List.of();
+        synchronized (this) {
+            hits++;
+            if (fromDisk) {
+                evicted = put(entry);
+            }
+        }
+        evicted.forEach(this::spill);
+        return new Hit(Arrays.asList(entry.matches), System.currentTimeMillis() - entry.createdAt,
+                entry.directories.length, fromDisk);
+    }
+
+    public void store(String key, Collection<String> matches, List<String> roots) {
+        long createdAt = System.currentTimeMillis();
+        List<String> absoluteRoots = new ArrayList<>();
+        for (String root : roots) {
+            absoluteRoots.add(new File(root).getAbsolutePath());
+        }
+
+        // Record each directory from a match up to its root once
+        Set<String> directories = new LinkedHashSet<>(absoluteRoots);
+        for (String match : matches) {
+            File dir = new File(match).getParentFile();
+            while (dir != null && directories.add(dir.getAbsolutePath()) && !absoluteRoots.contains(dir.getAbsolutePath())) {
+                dir = dir.getParentFile();
+            }
+        }
+
+        String[] dirs = directories.toArray(new String[0]);
+        long[] mtimes = new long[dirs.length];
+        for (int i = 0; i < dirs.length; i++) {
+            mtimes[i] = new File(dirs[i]).lastModified();
+        }
+        Entry entry = new Entry(key, matches.toArray(new String[0]), dirs, mtimes, createdAt);
+        if (entry.weight() > maxPaths) {
+            return; // Larger than the whole cache
+        }
+        List<Entry> evicted;
+        synchronized (this) {
+            evicted = put(entry);
+        }
+        evicted.forEach(this::spill); // Disk writes outside the lock, lookups are not blocked by them
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        cachedPaths = 0;
+    }
+
+    public synchronized String stats() {
+        return hits + " hits, " + misses + " misses (" + stale + " stale), " + entries.size() + " queries cached";
+    }
+
+    // Adds entry and returns the entries evicted to make room, for the caller to spill
+    private List<Entry> put(Entry entry) {
+        List<Entry> evicted = new ArrayList<>();
+        Entry old = entries.remove(entry.key);
+        if (old != null) cachedPaths -= old.weight();
+        entries.put(entry.key, entry);
+        cachedPaths += entry.weight();
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (cachedPaths > maxPaths && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            if (eldest == entry) continue;
+            it.remove();
+            cachedPaths -= eldest.weight();
+            evicted.add(eldest);
+        }
+        return evicted;
+    }
+
+    private void invalidate(String key) {
+        synchronized (this) {
+            Entry old = entries.remove(key);
+            if (old != null) cachedPaths -= old.weight();
+        }
+        if (spillDir != null) {
+            spillFile(key).delete();
+        }
+    }
+
+    // ---- Disk spill ----
+
+    private File spillFile(String key) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        return new File(spillDir, Long.toHexString(h) + ".cache");
+    }
+
+    // Written to a temporary file and renamed, so a concurrent lookup never reads a partial entry
+    private void spill(Entry entry) {
+        if (spillDir == null) return;
+        spillDir.mkdirs();
+        File file = spillFile(entry.key);
+        File partial = new File(spillDir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partial)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(entry.key);
+            out.writeLong(entry.createdAt);
+            out.writeInt(entry.matches.length);
+            for (String match : entry.matches) {
+                out.writeUTF(match);
+            }
+            out.writeInt(entry.directories.length);
+            for (int i = 0; i < entry.directories.length; i++) {
+                out.writeUTF(entry.directories[i]);
+                out.writeLong(entry.directoryMtimes[i]);
+            }
+        } catch (IOException e) {
+            partial.delete();
+            return;
+        }
+        try {
+            Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            partial.delete();
+        }
+    }
+
+    private Entry readSpilled(String key) {
+        File file = spillFile(key);
+        if (!file.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION || !in.readUTF().equals(key)) {
+                return null; // Other format or hash collision
+            }
+            long createdAt = in.readLong();
+            String[] matches = new String[in.readInt()];
+            for (int i = 0; i < matches.length; i++) {
+                matches[i] = in.readUTF();
+            }
+            String[] directories = new String[in.readInt()];
+            long[] mtimes = new long[directories.length];
+            for (int i = 0; i < directories.length; i++) {
+                directories[i] = in.readUTF();
+                mtimes[i] = in.readLong();
+            }
+            return new Entry(key, matches, directories, mtimes, createdAt);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,539 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-running search daemon. Keeps crawled roots indexed in memory (the paths
+ * off-heap, the file names in a TrigramIndex) and answers queries over a small
+ * HTTP API on the loopback interface, so the GUI and the command line can query
+ * a warm index instead of starting up and crawling again. Requests run on a
+ * bounded pool; when the pool and its queue are full the connection is closed
+ * unanswered. Results are streamed back one path per line as they are written.
+ *
+ * Every request must carry the token the daemon writes to a file only its user
+ * can read (see DaemonClient.tokenFile) in the X-Crawler-Token header, and a
+ * Host header naming the loopback address and port. Requests with an Origin
+ * header are refused, so web pages cannot reach the API through the browser,
+ * neither directly nor by rebinding a domain name to 127.0.0.1.
+ *
+ * Endpoints:
+ *   GET  /search?q=PATTERN[&root=DIR]...[&substring=1][&limit=N]
+ *        matching paths, one per line, then a "# matches=..." summary line
+ *   POST /index?root=DIR   crawl a root now (again, if it is already indexed)
+ *   GET  /status           indexed roots, their size and age, and the pool
+ *   POST /shutdown
+ *
+ * Usage: java SearchDaemon [--port P] [--threads N] [--queue N] [--max-age SECONDS]
+ *        [--links skip|follow|follow_once] [ROOT...]
+ */
+public class SearchDaemon {
+    private static final int FLUSH_EVERY = 256; // Lines per chunk sent to the client
+
+    // One crawled root: its paths in crawl order and the name index over its files
+    static class RootIndex {
+        final String root;
+        final OffHeapList paths;
+        final TrigramIndex names;
+        final int directories;
+        final long builtAt = System.currentTimeMillis();
+        final long crawlMillis;
+        private final AtomicInteger users = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean retired;
+
+        RootIndex(String root, OffHeapList paths, TrigramIndex names, int directories, long crawlMillis) {
+            this.root = root;
+            this.paths = paths;
+            this.names = names;
+            this.directories = directories;
+            this.crawlMillis = crawlMillis;
+        }
+
+        // A replaced index stays readable until the last query using it has finished
+        boolean acquire() {
+            users.incrementAndGet();
+            if (retired) {
+                release();
+                return false;
+            }
+            return true;
+        }
+
+        void release() {
+            if (users.decrementAndGet() == 0 && retired) close();
+        }
+
+        void retire() {
+            retired = true;
+            if (users.get() == 0) close();
+        }
+
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                paths.getStore().close();
+            }
+        }
+    }
+
+    private final TraversalGuard.LinkPolicy linkPolicy;
+    private final long maxAgeMillis;
+    private final Map<String, RootIndex> indexes = new ConcurrentHashMap<>();
+    private final Map<String, Future<RootIndex>> crawling = new ConcurrentHashMap<>();
+    private final ExecutorService indexer;
+    private final ThreadPoolExecutor requests;
+    private final HttpServer server;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final int port;
+    private final byte[] token;
+
+    public SearchDaemon(int port, int threads, int queue, long maxAgeMillis, TraversalGuard.LinkPolicy linkPolicy) throws IOException {
+        this.linkPolicy = linkPolicy;
+        this.maxAgeMillis = maxAgeMillis;
+        this.port = port;
+
+        // Loopback only, and every request is checked in handle(). Bound before the token is written,
+        // so a second daemon on a busy port fails here and leaves the running daemon's token alone.
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        try {
+            this.token = writeToken(DaemonClient.tokenFile(port)).getBytes(StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            server.stop(0);
+            throw e;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::deleteToken, "daemon-token-cleanup"));
+
+        AtomicInteger counter = new AtomicInteger();
+        this.indexer = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "daemon-indexer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.requests = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue),
+                r -> new Thread(r, "daemon-request-" + counter.incrementAndGet()));
+
+        server.setExecutor(requests);
+        server.createContext("/search", exchange -> handle(exchange, "GET", this::search));
+        server.createContext("/index", exchange -> handle(exchange, "POST", this::index));
+        server.createContext("/status", exchange -> handle(exchange, "GET", this::status));
+        server.createContext("/shutdown", exchange -> handle(exchange, "POST", this::shutdown));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DaemonClient.DEFAULT_PORT;
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        int queue = 64;
+        long maxAgeSeconds = 300;
+        TraversalGuard.LinkPolicy linkPolicy = TraversalGuard.LinkPolicy.SKIP;
+        List<String> roots = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--queue": queue = Integer.parseInt(args[++i]); break;
+                case "--max-age": maxAgeSeconds = Long.parseLong(args[++i]); break;
+                case "--links": linkPolicy = TraversalGuard.LinkPolicy.valueOf(args[++i].toUpperCase(Locale.ROOT)); break;
+                default:
+                    if (args[i].startsWith("--")) {
+                        System.err.println("Unknown option: " + args[i]);
+                        System.exit(2);
+                    }
+                    roots.add(args[i]);
+            }
+        }
+
+        SearchDaemon daemon = new SearchDaemon(port, threads, queue, maxAgeSeconds * 1000, linkPolicy);
+        daemon.server.start();
+        System.out.println("Search daemon listening on 127.0.0.1:" + port + " (" + threads + " threads, queue " + queue
+                + "), token in " + DaemonClient.tokenFile(port));
+        for (String root : roots) {
+            RootIndex index = daemon.index(normalize(root));
+            if (index != null) {
+                System.out.println("Indexed " + index.root + ": " + index.names.size() + " files, "
+                        + index.directories + " directories in " + index.crawlMillis + " ms");
+            } else {
+                System.err.println("Not a directory: " + root);
+            }
+        }
+        daemon.stopped.await();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange, Map<String, List<String>> params) throws Exception;
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        try {
+            String refused = refuse(exchange);
+            if (refused != null) {
+                send(exchange, 403, refused);
+                return;
+            }
+            if (!method.equals(exchange.getRequestMethod())) {
+                send(exchange, 405, method + " required");
+                return;
+            }
+            handler.handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch (IllegalArgumentException e) {
+            if (exchange.getResponseCode() < 0) send(exchange, 400, e.getMessage());
+        } catch (Exception e) {
+            if (exchange.getResponseCode() < 0) send(exchange, 500, e.toString()); // Else the stream just ends early
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void search(HttpExchange exchange, Map<String, List<String>> params) throws Exception {
+        String query = first(params, "q");
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Missing q");
+        }
+        boolean substring = "1".equals(first(params, "substring")) || "true".equals(first(params, "substring"));
+        String limitParam = first(params, "limit");
+        int limit = limitParam == null ? 0 : Integer.parseInt(limitParam);
+
+        // Without a root every indexed root is searched; an unknown root is crawled first.
+        // A root inside another requested root is dropped, its paths come with the outer one.
+        List<String> requested = new ArrayList<>();
+        for (String root : params.getOrDefault("root", List.of())) {
+            requested.add(normalize(root));
+        }
+        if (requested.isEmpty()) {
+            requested.addAll(indexes.keySet());
+        }
+        requested.sort(Comparator.comparingInt(String::length));
+        List<String> roots = new ArrayList<>();
+        for (String root : requested) {
+            if (roots.stream().noneMatch(outer -> contains(outer, root))) {
+                roots.add(root);
+            }
+        }
+        for (String root : roots) {
+            if (!new File(root).isDirectory()) {
+                send(exchange, 404, "Not a directory: " + root);
+                return;
+            }
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0); // Chunked: lines go out while the roots are queried
+        Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+        long start = System.nanoTime();
+        long matches = 0;
+        long candidates = 0;
+        long oldest = 0;
+        Set<String> written = roots.size() > 1 ? new HashSet<>() : null; // Same path reached from two roots, e.g. via links
+
+        for (String root : roots) {
+            RootIndex index = acquire(root);
+            if (index == null) continue; // Vanished while it was being crawled
+            try {
+                // A root below an indexed root is answered from that index, filtered to the subtree
+                String prefix = root.equals(index.root) ? null : root.endsWith(File.separator) ? root : root + File.separator;
+                TrigramIndex.Result result = index.names.query(query, substring);
+                candidates += result.candidates;
+                oldest = Math.max(oldest, System.currentTimeMillis() - index.builtAt);
+                for (int doc : result.docs) {
+                    if (limit > 0 && matches >= limit) break;
+                    String path = index.names.path(doc);
+                    if (prefix != null && !path.startsWith(prefix)) continue;
+                    if (written != null && !written.add(path)) continue;
+                    out.write(path);
+                    out.write('\n');
+                    if (++matches % FLUSH_EVERY == 0) out.flush();
+                }
+            } finally {
+                index.release();
+            }
+            if (limit > 0 && matches >= limit) break;
+        }
+
+        out.write("# matches=" + matches + " candidates=" + candidates + " roots=" + roots.size()
+                + " micros=" + (System.nanoTime() - start) / 1000 + " indexAgeMs=" + oldest + "\n");
+        out.flush();
+    }
+
+    private void index(HttpExchange exchange, Map<String, List<String>> params) throws Exception {
+        String root = first(params, "root");
+        if (root == null) {
+            throw new IllegalArgumentException("Missing root");
+        }
+        RootIndex index = index(normalize(root));
+        if (index == null) {
+            send(exchange, 404, "Not a directory: " + root);
+            return;
+        }
+        send(exchange, 200, describe(index) + "\n");
+    }
+
+    private void status(HttpExchange exchange, Map<String, List<String>> params) throws IOException {
+        StringBuilder text = new StringBuilder();
+        text.append("requests: ").append(requests.getActiveCount()).append(" active, ").append(requests.getQueue().size())
+                .append(" queued, ").append(requests.getCompletedTaskCount()).append(" completed\n");
+        text.append("links: ").append(linkPolicy).append(", max age ").append(maxAgeMillis / 1000).append(" s\n");
+        text.append("directory cache: ").append(DirectoryCache.shared().stats()).append('\n');
+        for (RootIndex index : indexes.values()) {
+            text.append(describe(index)).append(crawling.containsKey(index.root) ? " (refreshing)" : "").append('\n');
+        }
+        send(exchange, 200, text.toString());
+    }
+
+    private void shutdown(HttpExchange exchange, Map<String, List<String>> params) throws IOException {
+        send(exchange, 200, "Stopping\n");
+        // Stopping waits for running exchanges, this one included, so it cannot run on a request thread
+        Thread stopper = new Thread(() -> {
+            server.stop(1);
+            requests.shutdown();
+            indexer.shutdownNow();
+            indexes.values().forEach(RootIndex::retire);
+            deleteToken();
+            stopped.countDown();
+        }, "daemon-shutdown");
+        stopper.start();
+    }
+
+    // Why the request must not be served, or null if it passes the host, origin and token checks
+    private String refuse(HttpExchange exchange) {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null || !(host.equalsIgnoreCase("127.0.0.1:" + port) || host.equalsIgnoreCase("localhost:" + port))) {
+            return "Host not allowed";
+        }
+        if (exchange.getRequestHeaders().containsKey("Origin")) {
+            return "Browser requests not allowed";
+        }
+        String presented = exchange.getRequestHeaders().getFirst(DaemonClient.TOKEN_HEADER);
+        if (presented == null || !MessageDigest.isEqual(token, presented.getBytes(StandardCharsets.US_ASCII))) {
+            return "Missing or wrong token";
+        }
+        return null;
+    }
+
+    // A fresh random token, stored in a file readable by the current user only. Only called once the port
+    // is bound, so an existing file is left over from a daemon that is gone; it is replaced in one step.
+    private static String writeToken(File file) throws IOException {
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        StringBuilder token = new StringBuilder();
+        for (byte b : random) {
+            token.append(String.format("%02x", b));
+        }
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        dir.mkdirs();
+        Path tmp;
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            tmp = Files.createTempFile(dir.toPath(), file.getName(), ".tmp",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            tmp = Files.createTempFile(dir.toPath(), file.getName(), ".tmp");
+            File tmpFile = tmp.toFile();
+            tmpFile.setReadable(false, false);
+            tmpFile.setReadable(true, true);
+            tmpFile.setWritable(false, false);
+            tmpFile.setWritable(true, true);
+        }
+        try {
+            Files.write(tmp, token.toString().getBytes(StandardCharsets.US_ASCII));
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return token.toString();
+    }
+
+    // Removes the token file only while it still holds this daemon's token; a later daemon may own it by now
+    private void deleteToken() {
+        Path path = DaemonClient.tokenFile(port).toPath();
+        try {
+            if (MessageDigest.isEqual(token, Files.readAllBytes(path))) {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+
+    // Index covering root (its own or an indexed ancestor's), crawling it first if needed;
+    // a stale index is served while it is refreshed
+    private RootIndex acquire(String root) throws Exception {
+        while (true) {
+            String owner = owner(root);
+            RootIndex index = owner == null ? null : indexes.get(owner);
+            if (index == null) {
+                index = index(root);
+                if (index == null) return null;
+            } else if (System.currentTimeMillis() - index.builtAt > maxAgeMillis) {
+                refresh(owner);
+            }
+            if (index.acquire()) return index;
+        }
+    }
+
+    // Crawls root, or the indexed root containing it, unless that crawl is already running, and waits for the result
+    private RootIndex index(String root) throws Exception {
+        String owner = owner(root);
+        try {
+            return refresh(owner != null ? owner : root).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private Future<RootIndex> refresh(String root) {
+        FutureTask<RootIndex> task = new FutureTask<>(() -> {
+            try {
+                RootIndex index = crawl(root);
+                RootIndex old = index == null ? indexes.remove(root) : indexes.put(root, index);
+                if (old != null) old.retire();
+                // Roots inside this one are now covered by it and need no copy of their own
+                if (index != null) {
+                    for (String nested : new ArrayList<>(indexes.keySet())) {
+                        if (!nested.equals(root) && contains(root, nested)) {
+                            RootIndex covered = indexes.remove(nested);
+                            if (covered != null) covered.retire();
+                        }
+                    }
+                }
+                return index;
+            } finally {
+                crawling.remove(root);
+            }
+        });
+        // Registered before it is started, so a quick crawl cannot leave its entry behind
+        Future<RootIndex> running = crawling.putIfAbsent(root, task);
+        if (running != null) return running;
+        indexer.execute(task);
+        return task;
+    }
+
+    /**
+     * Depth-first crawl of root in listing order, through the shared directory
+     * cache: after the first crawl an unchanged directory costs one stat.
+     */
+    private RootIndex crawl(String root) {
+        File rootDir = new File(root);
+        if (!rootDir.isDirectory()) return null;
+
+        long start = System.currentTimeMillis();
+        OffHeapList paths = new OffHeapList(OffHeapStore.DEFAULT_BUDGET);
+        BitSet files = new BitSet();
+        TraversalGuard guard = new TraversalGuard(linkPolicy);
+        guard.enterRoot(rootDir);
+        DirectoryCache cache = DirectoryCache.shared();
+        int directories = 0;
+
+        Deque<File> stack = new ArrayDeque<>();
+        stack.push(rootDir);
+        while (!stack.isEmpty()) {
+            File dir = stack.pop();
+            directories++;
+            DirectoryCache.Listing listing = cache.list(dir);
+            if (listing == null) continue;
+
+            // Pushed in reverse so the first child is crawled first
+            for (int i = listing.files.length - 1; i >= 0; i--) {
+                if (listing.directories[i] && guard.admit(listing, i)) {
+                    stack.push(listing.files[i]);
+                }
+            }
+            for (int i = 0; i < listing.files.length; i++) {
+                if (!listing.directories[i]) {
+                    files.set(paths.size());
+                }
+                paths.add(listing.files[i].getAbsolutePath());
+            }
+        }
+
+        TrigramIndex names = TrigramIndex.buildByPosition(paths, files::get);
+        return new RootIndex(root, paths, names, directories, System.currentTimeMillis() - start);
+    }
+
+    // The indexed root equal to or containing root, or null
+    private String owner(String root) {
+        for (String indexed : indexes.keySet()) {
+            if (contains(indexed, root)) return indexed;
+        }
+        return null;
+    }
+
+    private static boolean contains(String outer, String path) {
+        return path.equals(outer) || path.startsWith(outer.endsWith(File.separator) ? outer : outer + File.separator);
+    }
+
+    private static String describe(RootIndex index) {
+        return index.root + ": " + index.names.size() + " files, " + index.directories + " directories, "
+                + index.names.memoryBytes() / 1024 + " KB name index, crawled in " + index.crawlMillis + " ms, "
+                + (System.currentTimeMillis() - index.builtAt) / 1000 + " s old";
+    }
+
+    private static String normalize(String root) {
+        return new File(root).toPath().toAbsolutePath().normalize().toString();
+    }
+
+    private static Map<String, List<String>> parseQuery(String rawQuery) {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        if (rawQuery == null) return params;
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+        return params;
+    }
+
+    private static String first(Map<String, List<String>> params, String key) {
+        List<String> values = params.get(key);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Snapshot of a directory tree for change detection. Every node stores a hash of
+ * its name, size and mtime; a directory's hash is a Merkle hash over its children,
+ * so two snapshots can be diffed by skipping every subtree whose hashes match.
+ * Capture, diff and persistence use explicit stacks, so tree depth is not limited
+ * by the thread stack. Each root keeps its last MAX_HISTORY snapshots, named by
+ * capture time.
+ */
+public class Snapshot {
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_HISTORY = 20;
+    private static final String EXTENSION = ".snap";
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    public enum Change { ADDED, REMOVED, MODIFIED }
+
+    public static class Node {
+        public final String name;
+        public final boolean directory;
+        public final long size;
+        public final long lastModified;
+        public final long hash;
+        public final Node[] children; // Sorted by name, empty for files
+
+        Node(String name, boolean directory, long size, long lastModified, long hash, Node[] children) {
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.children = children;
+        }
+    }
+
+    public static class Diff {
+        public final Map<String, Change> changes = new LinkedHashMap<>(); // Path -> change of that entry
+        public final Set<String> changedDirectories = new HashSet<>();    // Directories containing a change
+        public int nodesCompared;
+        public int subtreesSkipped;
+    }
+
+    public final String rootPath;
+    public final Node root;
+    public final long capturedAt;
+    public final int nodeCount;
+
+    private Snapshot(String rootPath, Node root, long capturedAt, int nodeCount) {
+        this.rootPath = rootPath;
+        this.root = root;
+        this.capturedAt = capturedAt;
+        this.nodeCount = nodeCount;
+    }
+
+    // A directory being captured or read: its children are filled in one by one
+    private static class Frame {
+        final String name;
+        final long size;
+        final long lastModified;
+        final long hash;                   // Stored hash when reading, unused when capturing
+        final Node[] children;
+        final DirectoryCache.Listing listing; // null when reading
+        int next;
+
+        Frame(String name, long size, long lastModified, long hash, Node[] children, DirectoryCache.Listing listing) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.children = children;
+            this.listing = listing;
+        }
+    }
+
+    public static Snapshot capture(File rootDir, TraversalGuard guard) {
+        File root = rootDir.getAbsoluteFile();
+        int count = 0;
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(openDirectory(root, root.getName(), root.length(), root.lastModified()));
+        count++;
+        Node result = null;
+
+        while (result == null) {
+            Frame frame = stack.peek();
+            if (frame.next < frame.children.length) {
+                int i = frame.next;
+                DirectoryCache.Listing listing = frame.listing;
+                File child = listing.files[i];
+                if (listing.directories[i] && guard.admit(listing, i)) {
+                    stack.push(openDirectory(child, child.getName(), listing.sizes[i], listing.lastModified[i]));
+                } else {
+                    frame.children[frame.next++] = new Node(child.getName(), listing.directories[i], listing.sizes[i],
+                            listing.lastModified[i], leafHash(child.getName(), listing.directories[i], listing.sizes[i],
+                            listing.lastModified[i]), NO_CHILDREN);
+                }
+                count++;
+                continue;
+            }
+
+            // All children done: diffing merges children by name, so use plain name order instead of the display order
+            stack.pop();
+            Arrays.sort(frame.children, Comparator.comparing(n -> n.name));
+            Node node = new Node(frame.name, true, frame.size, frame.lastModified, directoryHash(frame.name, frame.children), frame.children);
+            if (stack.isEmpty()) {
+                result = node;
+            } else {
+                Frame parent = stack.peek();
+                parent.children[parent.next++] = node;
+            }
+        }
+        return new Snapshot(root.getAbsolutePath(), result, System.currentTimeMillis(), count);
+    }
+
+    private static Frame openDirectory(File dir, String name, long size, long lastModified) {
+        // Editing a file does not change its directory's mtime, so child attributes must be read fresh
+        DirectoryCache.Listing listing = DirectoryCache.shared().refresh(dir);
+        Node[] children = listing == null ? NO_CHILDREN : new Node[listing.files.length];
+        return new Frame(name, size, lastModified, 0, children, listing);
+    }
+
+    // One pending step of a diff: compare two nodes (both set), or report a removed (after null) or added (before null) entry
+    private static class Step {
+        final Node before;
+        final Node after;
+        final String path;
+
+        Step(Node before, Node after, String path) {
+            this.before = before;
+            this.after = after;
+            this.path = path;
+        }
+    }
+
+    // Walks both trees together and only descends where the hashes differ
+    public static Diff diff(Snapshot before, Snapshot after) {
+        Diff diff = new Diff();
+        Deque<Step> stack = new ArrayDeque<>();
+        stack.push(new Step(before.root, after.root, after.rootPath));
+
+        while (!stack.isEmpty()) {
+            Step step = stack.pop();
+            if (step.after == null) {
+                diff.changes.put(step.path, Change.REMOVED);
+                continue;
+            }
+            if (step.before == null) {
+                // Everything below an added entry is added too; children pushed in reverse keep the listing order
+                diff.changes.put(step.path, Change.ADDED);
+                for (int c = step.after.children.length - 1; c >= 0; c--) {
+                    Node child = step.after.children[c];
+                    stack.push(new Step(null, child, childPath(step.path, child.name)));
+                }
+                continue;
+            }
+
+            diff.nodesCompared++;
+            if (step.before.hash == step.after.hash) {
+                diff.subtreesSkipped++;
+                continue;
+            }
+            if (!step.before.directory || !step.after.directory) {
+                diff.changes.put(step.path, Change.MODIFIED);
+                continue;
+            }
+            diff.changedDirectories.add(step.path);
+
+            // Both child arrays are sorted by name: merge them like two sorted lists
+            Node[] older = step.before.children;
+            Node[] newer = step.after.children;
+            List<Step> steps = new ArrayList<>();
+            int i = 0;
+            int j = 0;
+            while (i < older.length || j < newer.length) {
+                int cmp;
+                if (i == older.length) cmp = 1;
+                else if (j == newer.length) cmp = -1;
+                else cmp = older[i].name.compareTo(newer[j].name);
+
+                if (cmp < 0) {
+                    steps.add(new Step(older[i], null, childPath(step.path, older[i].name)));
+                    i++;
+                } else if (cmp > 0) {
+                    steps.add(new Step(null, newer[j], childPath(step.path, newer[j].name)));
+                    j++;
+                } else {
+                    steps.add(new Step(older[i], newer[j], childPath(step.path, newer[j].name)));
+                    i++;
+                    j++;
+                }
+            }
+            // Reverse, so the changes are reported in the same order as a recursive walk
+            for (int k = steps.size() - 1; k >= 0; k--) {
+                stack.push(steps.get(k));
+            }
+        }
+        return diff;
+    }
+
+    private static String childPath(String parent, String name) {
+        return parent.endsWith(File.separator) ? parent + name : parent + File.separator + name;
+    }
+
+    private static long leafHash(String name, boolean directory, long size, long lastModified) {
+        long h = mixString(0xCBF29CE484222325L, name);
+        h = mix(h, directory ? 1 : 0);
+        h = mix(h, size);
+        return mix(h, lastModified);
+    }
+
+    // Merkle hash: the directory name plus the hashes of all children in name order
+    private static long directoryHash(String name, Node[] children) {
+        long h = mix(mixString(0x84222325CBF29CE4L, name), children.length);
+        for (Node child : children) {
+            h = mix(h, child.hash);
+        }
+        return h;
+    }
+
+    private static long mixString(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    private static long mix(long h, long v) {
+        h ^= v;
+        h *= 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 31);
+    }
+
+    // ---- Persistence (pre-order, binary) ----
+
+    public void save(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null) parent.mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(rootPath);
+            out.writeLong(capturedAt);
+            out.writeInt(nodeCount);
+            writeNodes(out, root);
+        }
+    }
+
+    public static Snapshot load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format: " + file);
+            }
+            String rootPath = in.readUTF();
+            long capturedAt = in.readLong();
+            int nodeCount = in.readInt();
+            return new Snapshot(rootPath, readNodes(in), capturedAt, nodeCount);
+        }
+    }
+
+    // Stored snapshots of a root, newest first
+    public static List<File> history(String rootPath) {
+        List<File> files = new ArrayList<>();
+        File[] stored = historyDir(rootPath).listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (stored != null) {
+            files.addAll(Arrays.asList(stored));
+        }
+        File legacy = legacyFile(rootPath);
+        if (legacy.isFile()) {
+            files.add(legacy);
+        }
+        files.sort(Comparator.comparingLong(Snapshot::capturedAt).reversed());
+        return files;
+    }
+
+    // Capture time of a stored snapshot, from its name, or its header for the single-file layout
+    public static long capturedAt(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                in.readInt();
+                in.readUTF();
+                return in.readLong();
+            } catch (IOException ex) {
+                return 0;
+            }
+        }
+    }
+
+    // Stores this snapshot next to the earlier ones of its root and drops the oldest beyond MAX_HISTORY
+    public File saveToHistory() throws IOException {
+        File file = new File(historyDir(rootPath), capturedAt + EXTENSION);
+        save(file);
+        List<File> files = history(rootPath);
+        for (int i = MAX_HISTORY; i < files.size(); i++) {
+            files.get(i).delete();
+        }
+        return file;
+    }
+
+    private static File historyDir(String rootPath) {
+        File dir = new File(System.getProperty("user.home"), ".folder-crawler" + File.separator + "snapshots");
+        return new File(dir, Long.toHexString(mixString(0xCBF29CE484222325L, rootPath)));
+    }
+
+    // Where the single last snapshot of a root was kept before snapshots had a history
+    private static File legacyFile(String rootPath) {
+        return new File(historyDir(rootPath).getPath() + EXTENSION);
+    }
+
+    // Pre-order, children after their parent
+    private static void writeNodes(DataOutputStream out, Node root) throws IOException {
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            out.writeUTF(node.name);
+            out.writeBoolean(node.directory);
+            out.writeLong(node.size);
+            out.writeLong(node.lastModified);
+            out.writeLong(node.hash);
+            out.writeInt(node.children.length);
+            for (int i = node.children.length - 1; i >= 0; i--) {
+                stack.push(node.children[i]);
+            }
+        }
+    }
+
+    private static Node readNodes(DataInputStream in) throws IOException {
+        Deque<Frame> stack = new ArrayDeque<>();
+        while (true) {
+            String name = in.readUTF();
+            boolean directory = in.readBoolean();
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            long hash = in.readLong();
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Corrupt snapshot: negative child count");
+            }
+
+            Node node = null;
+            if (count > 0) {
+                stack.push(new Frame(name, size, lastModified, hash, new Node[count], null));
+            } else {
+                node = new Node(name, directory, size, lastModified, hash, NO_CHILDREN);
+            }
+
+            // Attach the finished node, then close every directory whose last child it was
+            while (node != null) {
+                if (stack.isEmpty()) {
+                    return node;
+                }
+                Frame parent = stack.peek();
+                parent.children[parent.next++] = node;
+                node = null;
+                if (parent.next == parent.children.length) {
+                    stack.pop();
+                    node = new Node(parent.name, true, parent.size, parent.lastModified, parent.hash, parent.children);
+                }
+            }
+        }
+    }
+}
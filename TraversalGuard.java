@@ -0,0 +1,98 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decides whether a traversal may descend into a directory. Applies the symbolic
+ * link policy and skips directories whose file key was already entered, so link
+ * loops and bind-mounted copies are crawled only once. One guard per traversal pass.
+ */
+public class TraversalGuard {
+
+    public enum LinkPolicy {
+        SKIP("Skip links"),               // Linked directories are shown but not entered
+        FOLLOW("Follow links"),           // Enter linked directories, every physical directory once
+        FOLLOW_ONCE("Follow links once"); // Like FOLLOW, but links inside a linked subtree are not entered
+
+        private final String label;
+
+        LinkPolicy(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final LinkPolicy policy;
+    private final FileKeySet entered = new FileKeySet();
+    private final Set<String> linkedSubtrees = new HashSet<>(); // Paths of followed links (FOLLOW_ONCE)
+    private final long[] key = new long[2];
+    private int skippedLinks;
+    private int skippedRepeats;
+
+    public TraversalGuard(LinkPolicy policy) {
+        this.policy = policy;
+    }
+
+    public LinkPolicy getPolicy() {
+        return policy;
+    }
+
+    // Registers a root directory so a link pointing back to it is recognised
+    public synchronized void enterRoot(File dir) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(dir.toPath(), BasicFileAttributes.class);
+            if (FileKeySet.extract(attrs.fileKey(), key)) {
+                entered.add(key[0], key[1]);
+            } else {
+                entered.add(dir, true); // A root may itself be reached through a link
+            }
+        } catch (IOException e) {
+            // Unreadable root, nothing to register
+        }
+    }
+
+    // Whether child i of the listing may be entered; files are always admitted
+    public boolean admit(DirectoryCache.Listing listing, int i) {
+        return !listing.directories[i] || admit(listing.files[i], listing.links[i], listing.keyDevices[i], listing.keyInodes[i]);
+    }
+
+    // Whether a directory may be entered, for walks that read attributes themselves; device NO_DEVICE if it has no file key
+    public synchronized boolean admit(File dir, boolean link, long device, long inode) {
+        if (link) {
+            if (policy == LinkPolicy.SKIP) {
+                skippedLinks++;
+                return false;
+            }
+            if (policy == LinkPolicy.FOLLOW_ONCE) {
+                // One set lookup per ancestor: is any of them a link that was already followed?
+                String path = dir.getAbsolutePath();
+                for (int sep = path.lastIndexOf(File.separatorChar); sep > 0; sep = path.lastIndexOf(File.separatorChar, sep - 1)) {
+                    if (linkedSubtrees.contains(path.substring(0, sep))) {
+                        skippedLinks++;
+                        return false;
+                    }
+                }
+                linkedSubtrees.add(path);
+            }
+        }
+
+        boolean fresh = device != FileKeySet.NO_DEVICE ? entered.add(device, inode) : entered.add(dir, link);
+        if (!fresh) {
+            skippedRepeats++; // Loop or the same directory reached through another path
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized String stats() {
+        return policy + ": " + entered.size() + " directories entered, " + skippedLinks + " links skipped, "
+                + skippedRepeats + " repeats skipped";
+    }
+}
@@ -1,6 +1,7 @@
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 // representasi node (visualisasi)
 public class TreeNodeData {
@@ -10,6 +11,11 @@ public class TreeNodeData {
     public int index; // Index among siblings (not directly used for vertical positioning anymore, but kept)
     public int subtreeWidth; // Calculated width required by this node's subtree for layout
     public List<TreeNodeData> children;
+    public volatile long usageBytes; // Total bytes in this subtree (disk-usage mode), refined while crawling
+    public volatile long usageFiles; // Number of files in this subtree (disk-usage mode)
+    public String archiveEntry; // Entry path inside a zip/jar for archive nodes, null for real files and folders
+    public boolean archiveDirectory; // Archive node that is a folder inside the archive
+    public boolean entered; // Directory the tree builder's guard admitted; links and repeats it rejected stay leaves
 
     public TreeNodeData(File file, int level, int index) {
         this.file = file;
@@ -28,4 +34,10 @@ public class TreeNodeData {
     public boolean isLeaf() {
         return children.isEmpty();
     }
+
+    // Whether an engine may go to child i of a listing: it must be in the tree, and a directory only if the tree entered it
+    public static boolean admitted(Map<String, TreeNodeData> nodeMap, DirectoryCache.Listing listing, int i) {
+        TreeNodeData node = nodeMap.get(listing.files[i].getAbsolutePath());
+        return node != null && (!listing.directories[i] || node.entered);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,412 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Trigram inverted index over the file names of a crawled tree, for instant
+ * substring and glob queries. Every lowercased name trigram maps to the sorted
+ * ids of the names containing it, stored as varint-encoded deltas. A query
+ * intersects the posting lists of its trigrams and only checks the surviving
+ * candidates against the real names.
+ */
+public class TrigramIndex {
+    private static final int[] NO_DOCS = new int[0];
+
+    public static class Result {
+        public final int[] docs;         // Matching names, in crawl order
+        public final int candidates;     // Names left after the posting-list intersection
+        public final long nanos;
+
+        Result(int[] docs, int candidates, long nanos) {
+            this.docs = docs;
+            this.candidates = candidates;
+            this.nanos = nanos;
+        }
+    }
+
+    private final List<String> paths;    // Source of the indexed paths, e.g. the traversal order
+    private final int[] docPaths;        // Name id -> index in paths
+    private final char[] nameChars;      // All lowercased names back to back
+    private final int[] nameStart;       // Name id -> offset in nameChars, plus one end offset
+
+    private final long[] trigrams;       // Sorted trigram keys
+    private final int[] postingStart;    // Trigram -> offset in postings, plus one end offset
+    private final int[] postingCount;
+    private final byte[] postings;       // Varint-encoded doc id deltas
+    private OffHeapStore ownedPaths;     // Copy of the indexed paths made by snapshot(), freed by close()
+
+    private TrigramIndex(List<String> paths, int[] docPaths, char[] nameChars, int[] nameStart,
+                         long[] trigrams, int[] postingStart, int[] postingCount, byte[] postings) {
+        this.paths = paths;
+        this.docPaths = docPaths;
+        this.nameChars = nameChars;
+        this.nameStart = nameStart;
+        this.trigrams = trigrams;
+        this.postingStart = postingStart;
+        this.postingCount = postingCount;
+        this.postings = postings;
+    }
+
+    // Indexes the names of every path accepted by include (for example only regular files)
+    public static TrigramIndex build(List<String> paths, Predicate<String> include) {
+        return buildByPosition(paths, i -> include.test(paths.get(i)));
+    }
+
+    // Same, deciding by position in paths (for callers that already know which entries are files)
+    public static TrigramIndex buildByPosition(List<String> paths, IntPredicate include) {
+        int[] docPaths = new int[16];
+        char[] nameChars = new char[256];
+        int[] nameStart = new int[17];
+        int docs = 0;
+        int chars = 0;
+        PostingBuilder builder = new PostingBuilder();
+
+        for (int i = 0; i < paths.size(); i++) {
+            if (!include.test(i)) continue;
+            String path = paths.get(i);
+
+            int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+            String name = path.substring(slash + 1);
+            if (docs == docPaths.length) {
+                docPaths = Arrays.copyOf(docPaths, docs * 2);
+                nameStart = Arrays.copyOf(nameStart, docs * 2 + 1);
+            }
+            if (chars + name.length() > nameChars.length) {
+                nameChars = Arrays.copyOf(nameChars, Math.max(nameChars.length * 2, chars + name.length()));
+            }
+            for (int c = 0; c < name.length(); c++) {
+                nameChars[chars + c] = Character.toLowerCase(name.charAt(c));
+            }
+            for (int c = 0; c + 3 <= name.length(); c++) {
+                builder.add(key(nameChars, chars + c), docs);
+            }
+            docPaths[docs] = i;
+            nameStart[docs] = chars;
+            chars += name.length();
+            docs++;
+            nameStart[docs] = chars;
+        }
+        return builder.finish(paths, Arrays.copyOf(docPaths, docs), Arrays.copyOf(nameChars, chars),
+                Arrays.copyOf(nameStart, docs + 1));
+    }
+
+    /**
+     * Like build, but copies the accepted paths into an off-heap store owned by
+     * the index, for sources that are cleared and refilled while the index is
+     * still being queried. close() frees the copy.
+     */
+    public static TrigramIndex snapshot(List<String> paths, Predicate<String> include) {
+        OffHeapList copy = new OffHeapList(OffHeapStore.DEFAULT_BUDGET);
+        for (int i = 0; i < paths.size(); i++) {
+            String path = paths.get(i);
+            if (include.test(path)) copy.add(path);
+        }
+        TrigramIndex index = buildByPosition(copy, i -> true);
+        index.ownedPaths = copy.getStore();
+        return index;
+    }
+
+    // Frees the paths copied by snapshot(); the index must not be queried afterwards
+    public void close() {
+        if (ownedPaths != null) ownedPaths.close();
+    }
+
+    public int size() {
+        return docPaths.length;
+    }
+
+    public int trigramCount() {
+        return trigrams.length;
+    }
+
+    // Bytes held by the index itself, not counting the indexed paths
+    public long memoryBytes() {
+        return (long) docPaths.length * 4 + (long) nameChars.length * 2 + (long) nameStart.length * 4
+                + (long) trigrams.length * 16 + postingStart.length * 4L + postings.length;
+    }
+
+    public String path(int doc) {
+        return paths.get(docPaths[doc]);
+    }
+
+    public String name(int doc) {
+        return new String(nameChars, nameStart[doc], nameStart[doc + 1] - nameStart[doc]);
+    }
+
+    /**
+     * Runs a query of one or more terms separated by ',' or ';'. A term without '*'
+     * matches names containing it, a term with '*' is a glob over the whole name.
+     * Matching is case-insensitive.
+     */
+    public Result query(String query) {
+        return query(query, true);
+    }
+
+    // With substringTerms false a term without '*' must be the whole name, like the search patterns
+    public Result query(String query, boolean substringTerms) {
+        long start = System.nanoTime();
+        int[] matches = NO_DOCS;
+        int candidates = 0;
+        for (String part : query.split("[,;]")) {
+            String term = PatternSet.fold(part.trim()); // Folded like the indexed names, whatever the locale
+            if (term.isEmpty()) continue;
+
+            boolean glob = !substringTerms || term.indexOf('*') >= 0;
+            int[] docs = candidatesFor(glob ? term.split("\\*") : new String[] { term });
+            candidates += docs == null ? size() : docs.length;
+
+            int[] termMatches = new int[docs == null ? size() : docs.length];
+            int count = 0;
+            char[] pattern = term.toCharArray();
+            for (int i = 0; i < termMatches.length; i++) {
+                int doc = docs == null ? i : docs[i];
+                if (glob ? globMatches(pattern, doc) : contains(pattern, doc)) {
+                    termMatches[count++] = doc;
+                }
+            }
+            matches = union(matches, Arrays.copyOf(termMatches, count));
+        }
+        return new Result(matches, candidates, System.nanoTime() - start);
+    }
+
+    // Intersection of the posting lists of every trigram in the fragments, null if no fragment has one
+    private int[] candidatesFor(String[] fragments) {
+        int[] slots = new int[0];
+        for (String fragment : fragments) {
+            char[] chars = fragment.toCharArray();
+            for (int c = 0; c + 3 <= chars.length; c++) {
+                int slot = Arrays.binarySearch(trigrams, key(chars, c));
+                if (slot < 0) return NO_DOCS; // Trigram never occurs: nothing can match
+                slots = Arrays.copyOf(slots, slots.length + 1);
+                slots[slots.length - 1] = slot;
+            }
+        }
+        if (slots.length == 0) return null; // Too short for trigrams, every name is a candidate
+
+        // Start from the shortest list so the working set only shrinks
+        Arrays.sort(slots);
+        long[] bySize = new long[slots.length];
+        int distinct = 0;
+        for (int i = 0; i < slots.length; i++) {
+            if (i > 0 && slots[i] == slots[i - 1]) continue;
+            bySize[distinct++] = ((long) postingCount[slots[i]] << 32) | slots[i];
+        }
+        Arrays.sort(bySize, 0, distinct);
+
+        int first = (int) bySize[0];
+        int[] docs = decode(first);
+        int count = docs.length;
+        for (int i = 1; i < distinct && count > 0; i++) {
+            count = intersect(docs, count, (int) bySize[i]);
+        }
+        return Arrays.copyOf(docs, count);
+    }
+
+    private int[] decode(int slot) {
+        int[] docs = new int[postingCount[slot]];
+        int pos = postingStart[slot];
+        int doc = 0;
+        for (int i = 0; i < docs.length; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[pos++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += delta;
+            docs[i] = doc;
+        }
+        return docs;
+    }
+
+    // Keeps the first count docs that also occur in the posting list of slot, returns the new count
+    private int intersect(int[] docs, int count, int slot) {
+        int pos = postingStart[slot];
+        int end = postingStart[slot + 1];
+        int doc = 0;
+        int kept = 0;
+        int i = 0;
+        while (i < count && pos < end) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[pos++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += delta;
+            while (i < count && docs[i] < doc) i++;
+            if (i < count && docs[i] == doc) {
+                docs[kept++] = doc;
+                i++;
+            }
+        }
+        return kept;
+    }
+
+    private boolean contains(char[] pattern, int doc) {
+        int from = nameStart[doc];
+        int last = nameStart[doc + 1] - pattern.length;
+        outer:
+        for (int s = from; s <= last; s++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (nameChars[s + j] != pattern[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Whole-name glob with '*', backtracking to the last star on a mismatch
+    private boolean globMatches(char[] pattern, int doc) {
+        int n = nameStart[doc];
+        int end = nameStart[doc + 1];
+        int p = 0;
+        int star = -1;
+        int resume = 0;
+        while (n < end) {
+            if (p < pattern.length && pattern[p] == '*') {
+                star = p++;
+                resume = n;
+            } else if (p < pattern.length && pattern[p] == nameChars[n]) {
+                p++;
+                n++;
+            } else if (star >= 0) {
+                p = star + 1;
+                n = ++resume;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length && pattern[p] == '*') p++;
+        return p == pattern.length;
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        if (a.length == 0) return b;
+        if (b.length == 0) return a;
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) result[k++] = a[i++];
+            else if (i == a.length || b[j] < a[i]) result[k++] = b[j++];
+            else {
+                result[k++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    private static long key(char[] chars, int at) {
+        return ((long) chars[at] << 32) | ((long) chars[at + 1] << 16) | chars[at + 2];
+    }
+
+    /**
+     * Collects postings while names are added in increasing id order. Each trigram
+     * gets its own growing byte array of varint deltas, found through an
+     * open-addressing table on the trigram key.
+     */
+    private static class PostingBuilder {
+        private long[] keys = new long[1024];
+        private int[] slots = new int[1024];      // Table entry -> trigram number + 1, 0 if empty
+        private int used;
+
+        private byte[][] data = new byte[256][];
+        private int[] length = new int[256];
+        private int[] count = new int[256];
+        private int[] lastDoc = new int[256];
+
+        void add(long key, int doc) {
+            int t = slotOf(key);
+            if (count[t] > 0 && lastDoc[t] == doc) return; // Trigram repeats within the name
+            int delta = doc - lastDoc[t];
+            lastDoc[t] = doc;
+            count[t]++;
+
+            byte[] bytes = data[t];
+            if (length[t] + 5 > bytes.length) {
+                bytes = data[t] = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            while ((delta & ~0x7F) != 0) {
+                bytes[length[t]++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length[t]++] = (byte) delta;
+        }
+
+        private int slotOf(long key) {
+            int mask = keys.length - 1;
+            int h = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+            while (slots[h] != 0) {
+                if (keys[h] == key) return slots[h] - 1;
+                h = (h + 1) & mask;
+            }
+            if (used == data.length) {
+                data = Arrays.copyOf(data, used * 2);
+                length = Arrays.copyOf(length, used * 2);
+                count = Arrays.copyOf(count, used * 2);
+                lastDoc = Arrays.copyOf(lastDoc, used * 2);
+            }
+            data[used] = new byte[8];
+            keys[h] = key;
+            slots[h] = ++used;
+            if (used * 2 > keys.length) rehash();
+            return used - 1;
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            int[] oldSlots = slots;
+            keys = new long[oldKeys.length * 2];
+            slots = new int[oldSlots.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldSlots[i] == 0) continue;
+                int h = (int) (oldKeys[i] * 0x9E3779B97F4A7C15L >>> 40) & mask;
+                while (slots[h] != 0) h = (h + 1) & mask;
+                keys[h] = oldKeys[i];
+                slots[h] = oldSlots[i];
+            }
+        }
+
+        TrigramIndex finish(List<String> paths, int[] docPaths, char[] nameChars, int[] nameStart) {
+            // Order the trigrams by key so queries can binary search them
+            Integer[] byKey = new Integer[used];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (slots[i] != 0) byKey[n++] = i;
+            }
+            Arrays.sort(byKey, (a, b) -> Long.compare(keys[a], keys[b]));
+
+            long[] sortedKeys = new long[used];
+            int[] trigramOf = new int[used];
+
+            int total = 0;
+            for (int i = 0; i < used; i++) {
+                sortedKeys[i] = keys[byKey[i]];
+                trigramOf[i] = slots[byKey[i]] - 1;
+                total += length[trigramOf[i]];
+            }
+
+            byte[] postings = new byte[total];
+            int[] postingStart = new int[used + 1];
+            int[] postingCount = new int[used];
+            int pos = 0;
+            for (int i = 0; i < used; i++) {
+                int t = trigramOf[i];
+                postingStart[i] = pos;
+                postingCount[i] = count[t];
+                System.arraycopy(data[t], 0, postings, pos, length[t]);
+                pos += length[t];
+                data[t] = null;
+            }
+            postingStart[used] = pos;
+            return new TrigramIndex(paths, docPaths, nameChars, nameStart, sortedKeys, postingStart, postingCount, postings);
+        }
+    }
+}